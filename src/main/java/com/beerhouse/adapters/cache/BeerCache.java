@@ -0,0 +1,156 @@
+package com.beerhouse.adapters.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of values by beer id, the beers themselves or something
+ * derived from them, with a time to live. Entries are spread over
+ * independently locked segments so concurrent reads of different ids rarely
+ * contend with each other.
+ */
+class BeerCache<V> {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int MAX_SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final Segment[] segments;
+    private final long timeToLiveNanos;
+    private final LongSupplier ticker;
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    BeerCache(int maximumSize, long timeToLive, TimeUnit unit) {
+        this(maximumSize, timeToLive, unit, System::nanoTime);
+    }
+
+    BeerCache(int maximumSize, long timeToLive, TimeUnit unit, LongSupplier ticker) {
+        if(maximumSize < 1) {
+            throw new IllegalArgumentException("Cache maximum size must be positive");
+        }
+
+        // A power of two no larger than the bound, and the bound split exactly across them
+        segments = new BeerCache.Segment[Math.min(MAX_SEGMENTS, Integer.highestOneBit(maximumSize))];
+        for(int i = 0; i < segments.length; i++) {
+            int remainder = i < maximumSize % segments.length ? 1 : 0;
+            segments[i] = new Segment(maximumSize / segments.length + remainder);
+        }
+
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.ticker = ticker;
+    }
+
+    V get(int id) {
+        V value = segmentFor(id).get(id, ticker.getAsLong());
+
+        if(value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns a stamp to pass to {@link #putIfUnchanged} once a value has been
+     * loaded, so loads that raced with a write never make it into the cache.
+     */
+    long stamp() {
+        return invalidations.get();
+    }
+
+    void putIfUnchanged(int id, V value, long stamp) {
+        segmentFor(id).putIfUnchanged(id, value, ticker.getAsLong() + timeToLiveNanos, stamp);
+    }
+
+    void invalidate(int id) {
+        invalidations.incrementAndGet();
+        segmentFor(id).remove(id);
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    long size() {
+        long size = 0;
+        for(Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentFor(int id) {
+        return segments[((id * 0x9E3779B9) >>> (Integer.SIZE - SEGMENT_BITS)) & (segments.length - 1)];
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Segment {
+        private final Map<Integer, Entry<V>> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<Integer, Entry<V>>(capacity, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Entry<V>> eldest) {
+                    if(size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized V get(int id, long now) {
+            Entry<V> entry = entries.get(id);
+            if(entry == null) {
+                return null;
+            }
+            if(now - entry.expiresAt >= 0) {
+                entries.remove(id);
+                evictions.increment();
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void putIfUnchanged(int id, V value, long expiresAt, long stamp) {
+            if(invalidations.get() == stamp) {
+                entries.put(id, new Entry<>(value, expiresAt));
+            }
+        }
+
+        synchronized void remove(int id) {
+            entries.remove(id);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
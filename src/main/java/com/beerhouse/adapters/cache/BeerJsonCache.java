@@ -0,0 +1,107 @@
+package com.beerhouse.adapters.cache;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.ports.BeerChangeListener;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Single beers already serialized to UTF-8 JSON, along with their version,
+ * so that reading a beer that did not change, or revalidating it, skips
+ * both loading and Jackson. Entries are dropped when the service reports a
+ * write; a load that raced with a write is not cached, so an entry always
+ * matches the latest version this instance wrote. Writes made elsewhere,
+ * by another instance or straight to the database, go unnoticed until the
+ * entry expires, so like the entity cache it is off unless enabled.
+ *
+ * The arrays are shared between requests and must not be modified.
+ */
+@Component
+@ConditionalOnProperty(name = "beerhouse.json-cache.enabled", havingValue = "true", matchIfMissing = false)
+@ManagedResource(objectName = "com.beerhouse:type=Cache,name=beerJson")
+public class BeerJsonCache implements BeerChangeListener {
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${beerhouse.json-cache.maximum-size:10000}")
+    int maximumSize;
+
+    @Value("${beerhouse.json-cache.time-to-live-seconds:300}")
+    long timeToLiveSeconds;
+
+    private BeerCache<SerializedBeer> cache;
+
+    @PostConstruct
+    public void createCache() {
+        cache = new BeerCache<>(maximumSize, timeToLiveSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * The JSON of the beer, serializing what {@code loader} returns on a miss.
+     */
+    public SerializedBeer get(int id, Supplier<Beer> loader) throws JsonProcessingException {
+        SerializedBeer serialized = cache.get(id);
+        if(serialized != null) {
+            return serialized;
+        }
+
+        long stamp = cache.stamp();
+        Beer beer = loader.get();
+        serialized = new SerializedBeer(beer.getVersion(), objectMapper.writeValueAsBytes(beer));
+        cache.putIfUnchanged(id, serialized, stamp);
+        return serialized;
+    }
+
+    @Override
+    public void beerSaved(Beer beer) {
+        cache.invalidate(beer.getId());
+    }
+
+    @Override
+    public void beerDeleted(int id) {
+        cache.invalidate(id);
+    }
+
+    @Override
+    public void beersRestored(List<Beer> beers) {
+        beers.forEach(beer -> cache.invalidate(beer.getId()));
+    }
+
+    @ManagedAttribute(description = "Reads answered with cached JSON")
+    public long getHitCount() {
+        return cache.hitCount();
+    }
+
+    @ManagedAttribute(description = "Reads that loaded and serialized the beer")
+    public long getMissCount() {
+        return cache.missCount();
+    }
+
+    @ManagedAttribute(description = "Entries currently cached")
+    public long getSize() {
+        return cache.size();
+    }
+
+    /**
+     * A beer's JSON and the version it was serialized from, its ETag.
+     */
+    @Data
+    public static final class SerializedBeer {
+        private final long version;
+        private final byte[] json;
+    }
+}
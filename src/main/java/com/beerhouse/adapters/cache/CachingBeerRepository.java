@@ -0,0 +1,166 @@
+package com.beerhouse.adapters.cache;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+import com.beerhouse.domain.ports.ForwardingBeerRepositoryPort;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache in front of another {@link BeerRepositoryPort}. Single beer
+ * lookups are served from memory and every write drops the affected id.
+ * Beers are mutable, so only copies go in and out of the cache.
+ */
+@ManagedResource(objectName = "com.beerhouse:type=Cache,name=beers")
+public class CachingBeerRepository extends ForwardingBeerRepositoryPort {
+
+    private final BeerCache<Beer> cache;
+
+    public CachingBeerRepository(BeerRepositoryPort delegate, int maximumSize, long timeToLiveSeconds) {
+        this(delegate, new BeerCache<>(maximumSize, timeToLiveSeconds, TimeUnit.SECONDS));
+    }
+
+    CachingBeerRepository(BeerRepositoryPort delegate, BeerCache<Beer> cache) {
+        super(delegate);
+        this.cache = cache;
+    }
+
+    @Override
+    public Beer retrieveOne(int id) {
+        Beer cached = cache.get(id);
+        if(cached != null) {
+            return copyOf(cached);
+        }
+
+        long stamp = cache.stamp();
+        Beer loaded = delegate.retrieveOne(id);
+
+        if(loaded != null) {
+            cache.putIfUnchanged(id, copyOf(loaded), stamp);
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Cached beers come from memory; the rest are loaded with a single
+     * lookup and cached like single ones.
+     */
+    @Override
+    public List<Beer> retrieveByIds(Collection<Integer> ids) {
+        List<Beer> found = new ArrayList<>(ids.size());
+        List<Integer> missing = new ArrayList<>();
+        for(int id : ids) {
+            Beer cached = cache.get(id);
+            if(cached == null) {
+                missing.add(id);
+            } else {
+                found.add(copyOf(cached));
+            }
+        }
+        if(missing.isEmpty()) {
+            return found;
+        }
+
+        long stamp = cache.stamp();
+        for(Beer loaded : delegate.retrieveByIds(missing)) {
+            cache.putIfUnchanged(loaded.getId(), copyOf(loaded), stamp);
+            found.add(loaded);
+        }
+
+        return found;
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        Beer created = delegate.create(beer);
+        cache.invalidate(created.getId());
+        return created;
+    }
+
+    @Override
+    public Beer update(Beer beer) {
+        try {
+            return delegate.update(beer);
+        } finally {
+            cache.invalidate(beer.getId());
+        }
+    }
+
+    @Override
+    public Beer alter(int id, Map<String,Object> changes, long expectedVersion) {
+        try {
+            return delegate.alter(id, changes, expectedVersion);
+        } finally {
+            cache.invalidate(id);
+        }
+    }
+
+    @Override
+    public Long delete(int id) {
+        try {
+            return delegate.delete(id);
+        } finally {
+            cache.invalidate(id);
+        }
+    }
+
+    @Override
+    public BeerBatchWrite applyBatch(List<Beer> creates, List<Beer> updates, List<Integer> deletes) {
+        BeerBatchWrite written = null;
+        try {
+            written = delegate.applyBatch(creates, updates, deletes);
+            return written;
+        } finally {
+            updates.forEach(beer -> cache.invalidate(beer.getId()));
+            deletes.forEach(cache::invalidate);
+            if(written != null) {
+                written.getCreated().forEach(beer -> cache.invalidate(beer.getId()));
+            }
+        }
+    }
+
+    /**
+     * Restored beers go straight into the cache, so a node reloaded from a
+     * copy of the catalog does not start cold. With more beers than fit,
+     * the last ones restored stay.
+     */
+    @Override
+    public void restore(List<Beer> beers) {
+        delegate.restore(beers);
+
+        long stamp = cache.stamp();
+        beers.forEach(beer -> cache.putIfUnchanged(beer.getId(), copyOf(beer), stamp));
+    }
+
+    @ManagedAttribute(description = "Lookups answered from the cache")
+    public long getHitCount() {
+        return cache.hitCount();
+    }
+
+    @ManagedAttribute(description = "Lookups that went to the underlying repository")
+    public long getMissCount() {
+        return cache.missCount();
+    }
+
+    @ManagedAttribute(description = "Entries dropped because of size or time to live")
+    public long getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    @ManagedAttribute(description = "Entries currently cached")
+    public long getSize() {
+        return cache.size();
+    }
+
+    private static Beer copyOf(Beer beer) {
+        return beer.toBuilder().build();
+    }
+}
@@ -0,0 +1,137 @@
+package com.beerhouse.adapters.cache;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+import com.beerhouse.domain.ports.ForwardingBeerRepositoryPort;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Lets concurrent lookups of the same id share one call to the wrapped port.
+ * The first caller loads, everyone arriving while that load is running waits
+ * for it and gets a copy of the same result, or the same exception.
+ */
+public class CoalescingBeerRepository extends ForwardingBeerRepositoryPort {
+
+    private final ConcurrentMap<Integer, CompletableFuture<Beer>> inFlight = new ConcurrentHashMap<>();
+
+    private final Runnable onJoin;
+
+    public CoalescingBeerRepository(BeerRepositoryPort delegate) {
+        this(delegate, () -> { });
+    }
+
+    /**
+     * {@code onJoin} runs whenever a caller finds a load already running,
+     * before it waits for it.
+     */
+    CoalescingBeerRepository(BeerRepositoryPort delegate, Runnable onJoin) {
+        super(delegate);
+        this.onJoin = onJoin;
+    }
+
+    @Override
+    public Beer retrieveOne(int id) {
+        CompletableFuture<Beer> load = new CompletableFuture<>();
+        CompletableFuture<Beer> runningLoad = inFlight.putIfAbsent(id, load);
+
+        if(runningLoad != null) {
+            onJoin.run();
+            return await(runningLoad);
+        }
+
+        try {
+            Beer loaded = delegate.retrieveOne(id);
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(id, load);
+        }
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        Beer created = delegate.create(beer);
+        forget(created.getId());
+        return created;
+    }
+
+    @Override
+    public Beer update(Beer beer) {
+        try {
+            return delegate.update(beer);
+        } finally {
+            forget(beer.getId());
+        }
+    }
+
+    @Override
+    public Beer alter(int id, Map<String,Object> changes, long expectedVersion) {
+        try {
+            return delegate.alter(id, changes, expectedVersion);
+        } finally {
+            forget(id);
+        }
+    }
+
+    @Override
+    public Long delete(int id) {
+        try {
+            return delegate.delete(id);
+        } finally {
+            forget(id);
+        }
+    }
+
+    @Override
+    public BeerBatchWrite applyBatch(List<Beer> creates, List<Beer> updates, List<Integer> deletes) {
+        try {
+            BeerBatchWrite written = delegate.applyBatch(creates, updates, deletes);
+            written.getCreated().forEach(beer -> forget(beer.getId()));
+            return written;
+        } finally {
+            updates.forEach(beer -> forget(beer.getId()));
+            deletes.forEach(this::forget);
+        }
+    }
+
+    @Override
+    public void restore(List<Beer> beers) {
+        try {
+            delegate.restore(beers);
+        } finally {
+            beers.forEach(beer -> forget(beer.getId()));
+        }
+    }
+
+    /**
+     * Loads that started before a write may return the old row, so callers
+     * arriving after the write must start a load of their own.
+     */
+    private void forget(int id) {
+        inFlight.remove(id);
+    }
+
+    private static Beer await(CompletableFuture<Beer> load) {
+        Beer loaded;
+        try {
+            loaded = load.join();
+        } catch (CompletionException ex) {
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+
+        return loaded == null ? null : loaded.toBuilder().build();
+    }
+}
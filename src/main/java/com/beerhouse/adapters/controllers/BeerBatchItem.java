@@ -0,0 +1,58 @@
+package com.beerhouse.adapters.controllers;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchOperation;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Set;
+
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+class BeerBatchItem {
+    private String op;
+
+    private Integer id;
+
+    private BeerRequest beer;
+
+    /**
+     * Items are validated one by one so a single bad entry is reported in its
+     * result instead of failing the whole batch.
+     */
+    BeerBatchOperation toOperation(Validator validator) {
+        BeerBatchOperation.Type type = null;
+        String violation = null;
+
+        if(op != null) {
+            try {
+                type = BeerBatchOperation.Type.valueOf(op.toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                violation = "Unknown operation " + op;
+            }
+        }
+
+        if(violation == null && beer != null) {
+            Set<ConstraintViolation<BeerRequest>> violations = validator.validate(beer);
+            if(!violations.isEmpty()) {
+                ConstraintViolation<BeerRequest> first = violations.iterator().next();
+                violation = "Field " + first.getPropertyPath() + " " + first.getMessage();
+            }
+        }
+
+        Beer parsedBeer = null;
+        if(violation == null && beer != null) {
+            try {
+                parsedBeer = beer.toBeer();
+            } catch (IllegalArgumentException ex) {
+                violation = ex.getMessage();
+            }
+        }
+
+        return new BeerBatchOperation(type, id, parsedBeer, violation);
+    }
+}
@@ -1,52 +1,303 @@
 package com.beerhouse.adapters.controllers;
 
+import com.beerhouse.adapters.cache.BeerJsonCache;
 import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchOperation;
+import com.beerhouse.domain.model.BeerBatchResult;
+import com.beerhouse.domain.model.BeerCategoryStats;
+import com.beerhouse.domain.model.BeerChanges;
+import com.beerhouse.domain.model.BeerFilter;
+import com.beerhouse.domain.model.BeerLookup;
+import com.beerhouse.domain.model.BeerPage;
+import com.beerhouse.domain.model.BeerProjectionPage;
+import com.beerhouse.domain.model.BeerUnits;
+import com.beerhouse.domain.model.exception.BeerVersionMismatchException;
 import com.beerhouse.domain.ports.BeerPersistencePort;
-import org.modelmapper.ModelMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 
+import static com.beerhouse.adapters.controllers.BeerJsonPatches.APPLICATION_JSON_PATCH_VALUE;
+import static com.beerhouse.adapters.controllers.BeerJsonPatches.APPLICATION_MERGE_PATCH_VALUE;
+
 @RestController
 @RequestMapping(value = "/beers", produces = MediaType.APPLICATION_JSON_VALUE)
 public class BeerController {
 
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final String SEQUENCE_HEADER = "X-Beer-Sequence";
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private BeerPersistencePort beerService;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private RenderedCatalog renderedCatalog;
+
+    @Autowired(required = false)
+    private BeerJsonCache jsonCache;
+
+    @Autowired(required = false)
+    private BeerEventStream eventStream;
 
-    @GetMapping
-    public List<Beer> retrieveAllBeers() {
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
 
+    /**
+     * Served from the pre-rendered catalog file when there is one; returns
+     * null then, the response has been written here. Either way the
+     * {@value #SEQUENCE_HEADER} header holds the change sequence number
+     * taken before the catalog was read, the one to sync from.
+     */
+    @GetMapping(params = {"!after", "!limit", "!category",
+            "!minPrice", "!maxPrice", "!minAlcohol", "!maxAlcohol", "!sort", "!ids", "!fields"})
+    public List<Beer> retrieveAllBeers(HttpServletRequest request,
+                                       HttpServletResponse response) throws IOException {
+
+        RenderedCatalog.Rendering rendering = renderedCatalog == null ? null : renderedCatalog.current();
+        if(rendering != null) {
+            sendRendering(rendering, request, response);
+            return null;
+        }
+
+        response.setHeader(SEQUENCE_HEADER, Long.toString(currentSequence()));
         return beerService.retrieveMany();
     }
 
-    @GetMapping(path = "/{id}")
+    /**
+     * Listing parameters cannot be combined with sort, ids or fields, which
+     * select their own handlers; such a request matches none and gets a 400.
+     */
+    @GetMapping(params = {"!sort", "!ids", "!fields"})
+    public BeerPage retrieveBeerPage(@RequestParam(required = false) String after,
+                                     @RequestParam(defaultValue = "100") int limit,
+                                     @RequestParam(required = false) String category,
+                                     @RequestParam(required = false) BigDecimal minPrice,
+                                     @RequestParam(required = false) BigDecimal maxPrice,
+                                     @RequestParam(required = false) BigDecimal minAlcohol,
+                                     @RequestParam(required = false) BigDecimal maxAlcohol) {
+
+        BeerFilter filter = filter(category, minPrice, maxPrice, minAlcohol, maxAlcohol);
+
+        return beerService.retrievePage(filter, after, limit);
+    }
+
+    /**
+     * The same page with only some fields of each beer, {@code ?fields=id,name,price};
+     * only their columns are read.
+     */
+    @GetMapping(params = {"fields", "!sort", "!ids"})
+    public BeerProjectionPage retrieveBeerFields(@RequestParam List<String> fields,
+                                                 @RequestParam(required = false) String after,
+                                                 @RequestParam(defaultValue = "100") int limit,
+                                                 @RequestParam(required = false) String category,
+                                                 @RequestParam(required = false) BigDecimal minPrice,
+                                                 @RequestParam(required = false) BigDecimal maxPrice,
+                                                 @RequestParam(required = false) BigDecimal minAlcohol,
+                                                 @RequestParam(required = false) BigDecimal maxAlcohol) {
+
+        BeerFilter filter = filter(category, minPrice, maxPrice, minAlcohol, maxAlcohol);
+
+        return beerService.retrievePage(filter, after, limit, fields);
+    }
+
+    @GetMapping(params = {"sort", "!ids", "!fields"})
+    public List<Beer> retrieveBeersByPrice(@RequestParam String category,
+                                           @RequestParam String sort,
+                                           @RequestParam(defaultValue = "10") int limit) {
+
+        return beerService.retrieveByPrice(category, sort, limit);
+    }
+
+    /**
+     * Several beers by id in one request, {@code ?ids=1,5,9}; ids without a
+     * beer are listed instead of failing the request. Listing parameters
+     * would not narrow the lookup, so combined with them it gets a 400.
+     */
+    @GetMapping(params = {"ids", "!sort", "!fields", "!after", "!limit", "!category",
+            "!minPrice", "!maxPrice", "!minAlcohol", "!maxAlcohol"})
+    public BeerLookup retrieveBeersByIds(@RequestParam List<Integer> ids) {
+
+        return beerService.retrieveByIds(ids);
+    }
+
+    /**
+     * The same lookup with the ids as a JSON array, for lists too long for
+     * a query string.
+     */
+    @PostMapping(path = "/lookup", consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
-    public Beer retrieveBeer(@PathVariable String id) {
+    public BeerLookup lookupBeers(@RequestBody List<Integer> ids) {
+
+        return beerService.retrieveByIds(ids);
+    }
+
+    @GetMapping(path = "/search")
+    public List<Beer> searchBeers(@RequestParam String q,
+                                  @RequestParam(defaultValue = "20") int limit) {
+
+        return beerService.search(q, limit);
+    }
+
+    @GetMapping(path = "/suggest")
+    public List<String> suggestBeerNames(@RequestParam String prefix,
+                                         @RequestParam(defaultValue = "10") int limit) {
+
+        return beerService.suggest(prefix, limit);
+    }
+
+    @GetMapping(path = "/stats")
+    public List<BeerCategoryStats> retrieveBeerStats() {
+
+        return beerService.retrieveStats();
+    }
+
+    /**
+     * Incremental sync: with {@code since}, what changed after it; start
+     * from the {@value #SEQUENCE_HEADER} header of the catalog download,
+     * {@code GET /beers} or {@code /beers/export}, since the rendered
+     * catalog can lag writes. Without {@code since} only the latest
+     * sequence number. A 410 means the changes are no longer known and the
+     * whole catalog has to be downloaded again.
+     */
+    @GetMapping(path = "/changes")
+    public BeerChanges retrieveBeerChanges(@RequestParam(required = false) Long since,
+                                           @RequestParam(defaultValue = "1000") int limit) {
+
+        return beerService.retrieveChanges(since, limit);
+    }
+
+    /**
+     * Server-Sent Events with every write as it happens: {@code saved} with
+     * the beer, {@code deleted} with its id. See {@link BeerEventStream}.
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamBeerEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+
+        if(eventStream == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_EVENT_STREAM, StandardCharsets.UTF_8))
+                .cacheControl(CacheControl.noCache())
+                .body(eventStream.subscribe(lastEventId));
+    }
+
+    @GetMapping(path = "/export", produces = APPLICATION_NDJSON_VALUE)
+    public void exportBeers(HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        response.setHeader(SEQUENCE_HEADER, Long.toString(currentSequence()));
+
+        // Writes are blocking, so a slow client also slows down the JDBC cursor
+        OutputStream outputStream = response.getOutputStream();
+        ObjectWriter beerWriter = objectMapper.writerFor(Beer.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+
+        beerService.export(beer -> {
+            try {
+                beerWriter.writeValue(outputStream, beer);
+                outputStream.write('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the beer's JSON as bytes, straight from the JSON cache when it
+     * is switched on. The ETag is the beer's version; a request that already
+     * holds it gets a 304 before the beer is serialized, and with the cache
+     * before it is even loaded.
+     */
+    @GetMapping(path = "/{id}")
+    public ResponseEntity<byte[]> retrieveBeer(@PathVariable String id, WebRequest webRequest) throws IOException {
         int parsedId = Integer.parseInt(id);
-        return beerService.retrieveOne(parsedId);
+
+        if(jsonCache == null) {
+            Beer beer = beerService.retrieveOne(parsedId);
+            if(webRequest.checkNotModified(etag(beer.getVersion()))) {
+                return null;
+            }
+            return jsonResponse(objectMapper.writeValueAsBytes(beer));
+        }
+
+        BeerJsonCache.SerializedBeer serialized = jsonCache.get(parsedId, () -> beerService.retrieveOne(parsedId));
+        if(webRequest.checkNotModified(etag(serialized.getVersion()))) {
+            return null;
+        }
+        return jsonResponse(serialized.getJson());
     }
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.CREATED)
     @ResponseBody
     public Beer createBeer(@Valid @RequestBody BeerRequest body) {
-        return beerService.create(modelMapper.map(body, Beer.class));
+        return beerService.create(body.toBeer());
     }
 
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<BeerBatchResult> applyBatch(@RequestBody List<BeerBatchItem> items) {
+        List<BeerBatchOperation> operations = new ArrayList<>(items.size());
+        for(BeerBatchItem item : items) {
+            operations.add(item.toOperation(validator));
+        }
+
+        return beerService.applyBatch(operations);
+    }
+
+    /**
+     * With an If-Match header the beer is only replaced if it is still at
+     * that version, otherwise the answer is 412.
+     */
     @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseBody
-    public Beer updateBeer(@PathVariable String id,
-                           @Valid @RequestBody BeerRequest body) {
+    public ResponseEntity<Beer> updateBeer(@PathVariable String id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           @Valid @RequestBody BeerRequest body) {
 
         int requestedId = Integer.parseInt(id);
 
@@ -56,16 +307,57 @@ public class BeerController {
                             " Path id: " + id +
                             ", resource id:" + body.getId());
 
-        Beer replacementBeer = modelMapper.map(body,Beer.class);
+        Beer replacementBeer = body.toBeer();
+        replacementBeer.setVersion(expectedVersion(requestedId, ifMatch));
 
-        return beerService.update(requestedId,replacementBeer);
+        return written(beerService.update(requestedId,replacementBeer));
     }
 
-    @PatchMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PatchMapping(path = "/{id}", consumes = {
+            MediaType.APPLICATION_JSON_VALUE, APPLICATION_MERGE_PATCH_VALUE})
     @ResponseBody
-    public Beer alterBeer(@PathVariable String id,
-                          @RequestBody LinkedHashMap<String,Object> fields) {
-        return beerService.alter(Integer.parseInt(id),fields);
+    public ResponseEntity<Beer> alterBeer(@PathVariable String id,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          @RequestBody LinkedHashMap<String,Object> fields) {
+        int parsedId = Integer.parseInt(id);
+
+        return written(beerService.alter(parsedId, fields, expectedVersion(parsedId, ifMatch)));
+    }
+
+    /**
+     * Patches with test, move, copy or remove are applied to the beer as
+     * read, so the changes are only written if it is still at the version
+     * read; the If-Match header, if any, must name that version too.
+     */
+    @PatchMapping(path = "/{id}", consumes = APPLICATION_JSON_PATCH_VALUE)
+    @ResponseBody
+    public ResponseEntity<Beer> patchBeer(@PathVariable String id,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          @RequestBody JsonNode patch) {
+        int parsedId = Integer.parseInt(id);
+        long expectedVersion = expectedVersion(parsedId, ifMatch);
+
+        LinkedHashMap<String,Object> fields = BeerJsonPatches.toFields(patch, objectMapper);
+
+        if(fields == null) {
+            // test, move, copy and remove need the current document
+            Beer readBeer = beerService.retrieveOne(parsedId);
+            if(expectedVersion != Beer.ANY_VERSION && expectedVersion != readBeer.getVersion()) {
+                throw new BeerVersionMismatchException(parsedId);
+            }
+            expectedVersion = readBeer.getVersion();
+
+            JsonNode currentBeer = objectMapper.valueToTree(readBeer);
+            JsonNode patchedBeer;
+            try {
+                patchedBeer = JsonPatch.fromJson(patch).apply(currentBeer);
+            } catch (IOException | JsonPatchException ex) {
+                throw new IllegalArgumentException(ex.getMessage());
+            }
+            fields = BeerJsonPatches.changedFields(currentBeer, patchedBeer, objectMapper);
+        }
+
+        return written(beerService.alter(parsedId, fields, expectedVersion));
     }
 
     @DeleteMapping(path = "/{id}")
@@ -75,4 +367,102 @@ public class BeerController {
         Long serviceResult = beerService.delete(Integer.parseInt(id));
         return new ResponseEntity<>(serviceResult + " row(s) deleted", HttpStatus.NO_CONTENT);
     }
+
+    private static BeerFilter filter(String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                     BigDecimal minAlcohol, BigDecimal maxAlcohol) {
+        return BeerFilter.builder()
+                .category(category)
+                .minPriceCents(minPrice == null ? null : BeerUnits.toCents(minPrice))
+                .maxPriceCents(maxPrice == null ? null : BeerUnits.toCents(maxPrice))
+                .minAlcoholBasisPoints(minAlcohol == null ? null : BeerUnits.toBasisPoints(minAlcohol))
+                .maxAlcoholBasisPoints(maxAlcohol == null ? null : BeerUnits.toBasisPoints(maxAlcohol))
+                .build();
+    }
+
+    private static ResponseEntity<byte[]> jsonResponse(byte[] json) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(json);
+    }
+
+    private static ResponseEntity<Beer> written(Beer beer) {
+        return ResponseEntity.ok()
+                .eTag(etag(beer.getVersion()))
+                .body(beer);
+    }
+
+    static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * The version an If-Match header asks for; no header or "*" takes any.
+     * Weak tags and lists never match, a beer has a single strong one.
+     */
+    static long expectedVersion(int id, String ifMatch) {
+        if(ifMatch == null || ifMatch.trim().equals("*")) {
+            return Beer.ANY_VERSION;
+        }
+
+        String tag = ifMatch.trim();
+        if(tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                long version = Long.parseLong(tag.substring(1, tag.length() - 1));
+                if(version >= 0) {
+                    return version;
+                }
+            } catch (NumberFormatException ex) {
+                // reported below
+            }
+        }
+        throw new BeerVersionMismatchException(id);
+    }
+
+    /**
+     * Changes recorded after it may or may not be in what is read next,
+     * so it has to be taken first.
+     */
+    private long currentSequence() {
+        return beerService.retrieveChanges(null, 1).getSequence();
+    }
+
+    /**
+     * Lets Tomcat sendfile() the rendering when the connector supports it,
+     * and otherwise transfers it from the file channel, which also avoids
+     * copying it through the heap where the platform allows.
+     */
+    private static void sendRendering(RenderedCatalog.Rendering rendering, HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzipped = rendering.getGzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzipped ? rendering.getGzipEtag() : rendering.getEtag();
+        Path file = gzipped ? rendering.getGzip() : rendering.getJson();
+        long length = gzipped ? rendering.getGzipLength() : rendering.getJsonLength();
+
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(SEQUENCE_HEADER, Long.toString(rendering.getSequence()));
+        if(new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        if(gzipped) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLengthLong(length);
+
+        if(Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return;
+        }
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            for(long sent = 0; sent < length; ) {
+                sent += channel.transferTo(sent, length - sent, target);
+            }
+        }
+    }
 }
@@ -1,7 +1,9 @@
 package com.beerhouse.adapters.controllers;
 
 import com.beerhouse.domain.model.exception.BeerAlreadyExistsException;
+import com.beerhouse.domain.model.exception.BeerChangesExpiredException;
 import com.beerhouse.domain.model.exception.BeerNotFoundException;
+import com.beerhouse.domain.model.exception.BeerVersionMismatchException;
 import com.beerhouse.domain.model.exception.NoBeersFoundException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -31,4 +33,25 @@ class BeerControllerAdvice {
     String beerAlreadyExists(BeerAlreadyExistsException ex) {
         return ex.getMessage();
     }
+
+    @ResponseBody
+    @ExceptionHandler(BeerVersionMismatchException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    String versionMismatch(BeerVersionMismatchException ex) {
+        return ex.getMessage();
+    }
+
+    @ResponseBody
+    @ExceptionHandler(BeerChangesExpiredException.class)
+    @ResponseStatus(HttpStatus.GONE)
+    String changesExpired(BeerChangesExpiredException ex) {
+        return ex.getMessage();
+    }
+
+    @ResponseBody
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    String illegalArgument(IllegalArgumentException ex) {
+        return ex.getMessage();
+    }
 }
@@ -0,0 +1,394 @@
+package com.beerhouse.adapters.controllers;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerChanges;
+import com.beerhouse.domain.model.exception.BeerChangesExpiredException;
+import com.beerhouse.domain.ports.BeerChangeListener;
+import com.beerhouse.domain.ports.BeerPersistencePort;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes catalog changes to Server-Sent Events subscribers. Writes only
+ * wake up a single dispatcher thread, which reads what changed since its
+ * last round from the change log, once for all subscribers, serializes it
+ * once and hands the frames to every subscriber's buffer. A small pool of
+ * writer threads drains the buffers to the connections.
+ *
+ * The dispatcher never waits for a buffer. A round is never larger than a
+ * buffer, and a subscriber whose buffer has no room for one is left behind
+ * rather than waited for: it is caught up from the change log, a round at a
+ * time, whenever its buffer has been drained. One that has written nothing
+ * for {@code slow-consumer-millis} while behind is disconnected as slow.
+ *
+ * Event ids are change sequence numbers and only the last event of a round
+ * carries one, so a subscriber that reconnects with Last-Event-ID is sent
+ * that round again in full rather than half of it. A slow subscriber can
+ * resume the same way; one that asks for changes the log no longer knows
+ * gets a {@code reset} event and has to download the catalog again, then
+ * resume from the sequence number that download carries.
+ */
+@Component
+@ConditionalOnProperty(name = "beerhouse.events.enabled", havingValue = "true")
+@ManagedResource(objectName = "com.beerhouse:type=Events,name=beers")
+public class BeerEventStream implements BeerChangeListener {
+
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType("text", "plain", StandardCharsets.UTF_8);
+    private static final int ROUND_SIZE = 1000;
+
+    @Autowired
+    BeerPersistencePort beerService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${beerhouse.events.buffer-size:256}")
+    int bufferSize;
+
+    @Value("${beerhouse.events.writer-threads:2}")
+    int writerThreads;
+
+    @Value("${beerhouse.events.timeout-millis:600000}")
+    long timeoutMillis;
+
+    @Value("${beerhouse.events.slow-consumer-millis:1000}")
+    long slowConsumerMillis;
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "beer-event-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    ExecutorService writers;
+
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong slowConsumers = new AtomicLong();
+
+    // Only read and written on the dispatcher thread
+    private long sequence;
+
+    @PostConstruct
+    public void createWriters() {
+        AtomicInteger threads = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "beer-event-writer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts from the current sequence number once the service, which
+     * depends on this listener, is ready.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void start() {
+        dispatcher.execute(() -> sequence = beerService.retrieveChanges(null, 1).getSequence());
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+        writers.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    /**
+     * A new subscription, resuming after {@code lastEventId} when it is set
+     * and otherwise starting with a {@code ready} event that carries the
+     * current sequence number.
+     */
+    public ResponseBodyEmitter subscribe(Long lastEventId) {
+        Subscriber subscriber = new Subscriber(new ResponseBodyEmitter(timeoutMillis), bufferSize);
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+
+        dispatcher.execute(() -> join(subscriber, lastEventId));
+        return subscriber.emitter;
+    }
+
+    @Override
+    public void beerSaved(Beer beer) {
+        scheduleDispatch();
+    }
+
+    @Override
+    public void beerDeleted(int id) {
+        scheduleDispatch();
+    }
+
+    /**
+     * Restores happen before there is anyone to tell, and are not in the
+     * change log that subscribers resume from.
+     */
+    @Override
+    public void beersRestored(List<Beer> beers) {
+    }
+
+    @ManagedAttribute(description = "Connected subscribers")
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @ManagedAttribute(description = "Subscribers disconnected for writing nothing while behind")
+    public long getSlowConsumerCount() {
+        return slowConsumers.get();
+    }
+
+    private void scheduleDispatch() {
+        if(dispatchScheduled.compareAndSet(false, true)) {
+            dispatcher.execute(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        // Writes from here on need a round of their own
+        dispatchScheduled.set(false);
+
+        if(subscribers.isEmpty()) {
+            sequence = beerService.retrieveChanges(null, 1).getSequence();
+            return;
+        }
+
+        try {
+            BeerChanges changes;
+            do {
+                changes = beerService.retrieveChanges(sequence, roundSize());
+                List<Frame> frames = frames(changes);
+                for(Subscriber subscriber : subscribers) {
+                    if(subscriber.behind == null && !subscriber.offerAll(frames)) {
+                        subscriber.behind = sequence;
+                    }
+                }
+                sequence = changes.getSequence();
+            } while(changes.isMore());
+        } catch (BeerChangesExpiredException e) {
+            // Fell further behind than the change log remembers, so does every subscriber
+            for(Subscriber subscriber : subscribers) {
+                subscriber.reset();
+            }
+            sequence = beerService.retrieveChanges(null, 1).getSequence();
+            return;
+        } catch (RuntimeException e) {
+            // Nothing was sent past the sequence number, the next write retries
+        }
+
+        for(Subscriber subscriber : subscribers) {
+            catchUp(subscriber);
+        }
+    }
+
+    /**
+     * A subscriber resuming after its last event starts out behind, and is
+     * caught up before it gets the rounds that follow.
+     */
+    private void join(Subscriber subscriber, Long lastEventId) {
+        if(lastEventId == null) {
+            subscriber.offerAll(Collections.singletonList(new Frame("ready", sequence, "")));
+        } else {
+            subscriber.behind = lastEventId;
+        }
+        subscribers.add(subscriber);
+        catchUp(subscriber);
+    }
+
+    /**
+     * Sends a subscriber that is behind the rounds it missed, as many as its
+     * buffer has room for; its writer asks for more once it has drained
+     * them. Catching up may run past the latest round, the next round then
+     * repeats some changes.
+     */
+    private void catchUp(Subscriber subscriber) {
+        try {
+            while(subscriber.behind != null && !subscriber.isGone()) {
+                if(subscriber.behind >= sequence) {
+                    subscriber.behind = null;
+                    return;
+                }
+                if(subscriber.buffer.remainingCapacity() < roundSize()) {
+                    if(subscriber.isStalled()) {
+                        slowConsumers.incrementAndGet();
+                        subscriber.close();
+                    }
+                    return;
+                }
+
+                BeerChanges changes = beerService.retrieveChanges(subscriber.behind, roundSize());
+                subscriber.offerAll(frames(changes));
+                subscriber.behind = changes.getSequence();
+            }
+        } catch (BeerChangesExpiredException e) {
+            subscriber.reset();
+        } catch (RuntimeException e) {
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Every round fits an empty buffer.
+     */
+    private int roundSize() {
+        return Math.min(ROUND_SIZE, bufferSize);
+    }
+
+    private List<Frame> frames(BeerChanges changes) {
+        List<Frame> frames = new ArrayList<>(changes.getItems().size() + changes.getDeletedIds().size());
+        try {
+            for(Beer beer : changes.getItems()) {
+                frames.add(new Frame("saved", null, objectMapper.writeValueAsString(beer)));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        for(int id : changes.getDeletedIds()) {
+            frames.add(new Frame("deleted", null, "{\"id\":" + id + "}"));
+        }
+
+        if(!frames.isEmpty()) {
+            Frame last = frames.remove(frames.size() - 1);
+            frames.add(new Frame(last.event, changes.getSequence(), last.data));
+        }
+        return frames;
+    }
+
+    /**
+     * One event in the text/event-stream format, rendered once and written
+     * as is to every subscriber.
+     */
+    private static final class Frame {
+        final String event;
+        final String data;
+        final String text;
+
+        Frame(String event, Long id, String data) {
+            this.event = event;
+            this.data = data;
+            StringBuilder text = new StringBuilder("event:").append(event).append('\n');
+            if(id != null) {
+                text.append("id:").append(id).append('\n');
+            }
+            this.text = text.append("data:").append(data).append("\n\n").toString();
+        }
+    }
+
+    /**
+     * A connection and its bounded buffer of frames not yet written. At most
+     * one writer drains a buffer at a time, so frames go out in order.
+     */
+    private final class Subscriber {
+        final ResponseBodyEmitter emitter;
+        final BlockingQueue<Frame> buffer;
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        // Completes the connection once the buffer is written
+        volatile boolean closing;
+        // The sequence number it has been sent up to while it is behind the rounds, null when it is not
+        volatile Long behind;
+        volatile long lastWriteNanos = System.nanoTime();
+
+        Subscriber(ResponseBodyEmitter emitter, int bufferSize) {
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        /**
+         * Buffers all the frames or, when there is not room for all of
+         * them, none. Only the dispatcher adds frames, so the room it sees
+         * can only grow while it adds them.
+         */
+        boolean offerAll(List<Frame> frames) {
+            if(isGone() || buffer.remainingCapacity() < frames.size()) {
+                return false;
+            }
+            buffer.addAll(frames);
+            scheduleDrain();
+            return true;
+        }
+
+        boolean isGone() {
+            return closed.get() || closing;
+        }
+
+        boolean isStalled() {
+            return !buffer.isEmpty()
+                    && System.nanoTime() - lastWriteNanos > TimeUnit.MILLISECONDS.toNanos(slowConsumerMillis);
+        }
+
+        void reset() {
+            buffer.clear();
+            buffer.offer(new Frame("reset", null, ""));
+            closing = true;
+            subscribers.remove(this);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if(draining.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                for(Frame frame = buffer.poll(); frame != null && !closed.get(); frame = buffer.poll()) {
+                    emitter.send(frame.text, TEXT_PLAIN_UTF8);
+                    lastWriteNanos = System.nanoTime();
+                }
+                if(closing && buffer.isEmpty()) {
+                    close();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the connection timed out
+                close();
+            } finally {
+                draining.set(false);
+            }
+
+            if(!closed.get() && !buffer.isEmpty()) {
+                scheduleDrain();
+            } else if(behind != null) {
+                dispatcher.execute(() -> catchUp(this));
+            }
+        }
+
+        private void close() {
+            if(!closed.compareAndSet(false, true)) {
+                return;
+            }
+            subscribers.remove(this);
+            buffer.clear();
+            emitter.complete();
+        }
+    }
+}
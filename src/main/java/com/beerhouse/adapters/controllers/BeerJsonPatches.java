@@ -0,0 +1,90 @@
+package com.beerhouse.adapters.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns RFC 6902 JSON Patch documents into the field map accepted by
+ * {@code BeerPersistencePort.alter}, so patches end up as column level updates.
+ */
+final class BeerJsonPatches {
+
+    static final String APPLICATION_JSON_PATCH_VALUE = "application/json-patch+json";
+    static final String APPLICATION_MERGE_PATCH_VALUE = "application/merge-patch+json";
+
+    private static final List<String> BEER_FIELDS =
+            Arrays.asList("name", "ingredients", "alcoholContent", "price", "category");
+
+    private BeerJsonPatches() {
+    }
+
+    /**
+     * Translates patches made only of add/replace operations on top level
+     * fields, which need nothing from the current row. Returns null for any
+     * other patch, those have to be applied to the current document.
+     */
+    static LinkedHashMap<String,Object> toFields(JsonNode patch, ObjectMapper objectMapper) {
+        if(!patch.isArray()) {
+            throw new IllegalArgumentException("A JSON Patch document must be an array of operations");
+        }
+
+        LinkedHashMap<String,Object> fields = new LinkedHashMap<>();
+
+        for(JsonNode operation : patch) {
+            String op = operation.path("op").asText();
+            String path = operation.path("path").asText();
+
+            if(!("add".equals(op) || "replace".equals(op))
+                    || !path.startsWith("/") || path.indexOf('/', 1) != -1 || path.indexOf('~') != -1
+                    || !operation.has("value")) {
+                return null;
+            }
+
+            fields.put(path.substring(1), toValue(operation.get("value"), objectMapper));
+        }
+
+        return fields;
+    }
+
+    /**
+     * Lists the beer fields whose value differs between two documents, with
+     * a null value for fields the patch removed.
+     */
+    static LinkedHashMap<String,Object> changedFields(JsonNode before, JsonNode after, ObjectMapper objectMapper) {
+        LinkedHashMap<String,Object> fields = new LinkedHashMap<>();
+
+        for(String field : BEER_FIELDS) {
+            JsonNode value = after.get(field);
+            if(value == null || value.isNull()) {
+                fields.put(field, null);
+            } else if(!value.equals(before.get(field))) {
+                fields.put(field, toValue(value, objectMapper));
+            }
+        }
+
+        Iterator<String> fieldNames = after.fieldNames();
+        while(fieldNames.hasNext()) {
+            String field = fieldNames.next();
+            if(!"id".equals(field) && !BEER_FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Unknown beer field " + field);
+            }
+        }
+
+        return fields;
+    }
+
+    private static Object toValue(JsonNode value, ObjectMapper objectMapper) {
+        try {
+            return objectMapper.treeToValue(value, Object.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Invalid value " + value);
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package com.beerhouse.adapters.controllers;
 
+import com.beerhouse.domain.model.Beer;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
-import javax.validation.constraints.Min;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.math.BigDecimal;
@@ -29,10 +30,21 @@ class BeerRequest {
     private String alcoholContent;
 
     @NotNull
-    @Min(value = (long) 0.01)
+    @DecimalMin(value = "0.01")
     private BigDecimal price;
 
     @NotNull
     @Size(min = 1, max = 20)
     private String category;
+
+    Beer toBeer() {
+        return Beer.builder()
+                .id(id)
+                .name(name)
+                .ingredients(ingredients)
+                .alcoholContent(alcoholContent)
+                .price(price)
+                .category(category)
+                .build();
+    }
 }
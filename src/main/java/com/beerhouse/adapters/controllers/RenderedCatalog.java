@@ -0,0 +1,304 @@
+package com.beerhouse.adapters.controllers;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.ports.BeerChangeListener;
+import com.beerhouse.domain.ports.BeerPersistencePort;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The body of a full {@code GET /beers} rendered ahead of time into a file,
+ * and optionally a gzipped copy of it, so that the download is a file
+ * transfer instead of a query and a serialization per request.
+ *
+ * A write schedules a new rendering at most {@code debounce-millis} later;
+ * writes arriving before it starts share it. Until it is done the previous
+ * rendering is served, so downloads lag writes by about that long, and
+ * each rendering carries the change sequence number taken before it was
+ * exported, for clients to sync from. Each
+ * rendering gets files of its own, named after its ETag, and the files of
+ * those it replaced are kept for {@code retention-millis}, so a transfer
+ * handed one of them can still open it. Tomcat's sendfile opens the file
+ * only after the request has been handled, and once open it survives the
+ * file being deleted.
+ * Every instance renders into a directory of its own under the configured
+ * one, so instances sharing it never delete each other's files. A failed
+ * rendering is logged and retried with backoff; meanwhile there is no
+ * rendering and the list is served from the database.
+ */
+@Component
+@ConditionalOnProperty(name = "beerhouse.catalog-file.enabled", havingValue = "true")
+public class RenderedCatalog implements BeerChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderedCatalog.class);
+
+    private static final long MIN_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 60_000;
+
+    @Autowired
+    BeerPersistencePort beerService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${beerhouse.catalog-file.directory:${java.io.tmpdir}/beerhouse-catalog}")
+    String directory;
+
+    @Value("${beerhouse.catalog-file.gzip:true}")
+    boolean gzip;
+
+    @Value("${beerhouse.catalog-file.debounce-millis:500}")
+    long debounceMillis;
+
+    @Value("${beerhouse.catalog-file.retention-millis:60000}")
+    long retentionMillis;
+
+    private final ScheduledExecutorService renderer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "beer-catalog-renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean renderScheduled = new AtomicBoolean();
+    private final AtomicLong renderings = new AtomicLong();
+
+    private volatile Rendering current;
+    private Path renderDirectory;
+    // Only read and written on the renderer thread
+    private final Deque<Retired> retired = new ArrayDeque<>();
+    private int failedRenders;
+
+    @PostConstruct
+    public void createDirectory() throws IOException {
+        Path parent = Paths.get(directory);
+        Files.createDirectories(parent);
+        renderDirectory = Files.createTempDirectory(parent, "renderings-");
+    }
+
+    /**
+     * The first rendering waits for the context, the service and this
+     * listener depend on each other.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void start() {
+        scheduleRender(0);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        renderer.shutdownNow();
+        try {
+            renderer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        current = null;
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(renderDirectory)) {
+            for(Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(renderDirectory);
+    }
+
+    /**
+     * The latest rendering, or null when there is none yet or the catalog
+     * was empty, in which case the request has to be answered the usual way.
+     */
+    public Rendering current() {
+        return current;
+    }
+
+    @Override
+    public void beerSaved(Beer beer) {
+        scheduleRender(debounceMillis);
+    }
+
+    @Override
+    public void beerDeleted(int id) {
+        scheduleRender(debounceMillis);
+    }
+
+    @Override
+    public void beersRestored(List<Beer> beers) {
+        scheduleRender(debounceMillis);
+    }
+
+    private void scheduleRender(long delayMillis) {
+        if(renderScheduled.compareAndSet(false, true)) {
+            renderer.schedule(this::renderQuietly, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void renderQuietly() {
+        // Writes from here on need a rendering of their own
+        renderScheduled.set(false);
+        try {
+            render();
+            failedRenders = 0;
+        } catch (IOException | RuntimeException e) {
+            // A stale rendering would be served with a valid ETag for as long as no write comes along
+            long retryMillis = Math.min(MAX_RETRY_MILLIS,
+                    Math.max(debounceMillis, MIN_RETRY_MILLIS) << Math.min(failedRenders++, 10));
+            log.warn("Rendering the catalog failed, serving it from the database and retrying in {} ms",
+                    retryMillis, e);
+            retire();
+            scheduleRender(retryMillis);
+        }
+    }
+
+    /**
+     * Streams the catalog into a JSON array, the same document the list
+     * endpoint would produce, then compresses it. The ETag is the CRC32 of
+     * the JSON, so it survives restarts as long as the catalog does not
+     * change.
+     */
+    void render() throws IOException {
+        long sequence = beerService.retrieveChanges(null, 1).getSequence();
+        Path json = renderDirectory.resolve("rendering-" + renderings.incrementAndGet() + ".tmp");
+        CRC32 crc = new CRC32();
+        long[] beers = {0};
+
+        try(OutputStream out = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(json), 1 << 16), crc);
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            beerService.export(beer -> {
+                try {
+                    generator.writeObject(beer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                beers[0]++;
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(json);
+            throw e.getCause();
+        }
+
+        if(beers[0] == 0) {
+            Files.delete(json);
+            replace(null);
+            return;
+        }
+
+        String tag = Long.toHexString(crc.getValue());
+        Path renderedJson = renderDirectory.resolve("catalog-" + tag + ".json");
+        Files.move(json, renderedJson, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Path renderedGzip = null;
+        if(gzip) {
+            renderedGzip = renderDirectory.resolve("catalog-" + tag + ".json.gz");
+            Path compressed = renderDirectory.resolve("rendering-" + renderings.get() + ".gz.tmp");
+            try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed), 1 << 16)) {
+                Files.copy(renderedJson, out);
+            }
+            Files.move(compressed, renderedGzip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        replace(new Rendering("\"" + tag + "\"", renderedJson, Files.size(renderedJson),
+                renderedGzip, renderedGzip == null ? 0 : Files.size(renderedGzip), sequence));
+    }
+
+    /**
+     * Publishes the rendering and deletes every file but its own and those
+     * of the renderings retired less than {@code retentionMillis} ago,
+     * including what failed renderings left behind.
+     */
+    private void replace(Rendering rendering) throws IOException {
+        if(current != null && (rendering == null || !current.getJson().equals(rendering.getJson()))) {
+            retire();
+        }
+        current = rendering;
+
+        long now = System.nanoTime();
+        retired.removeIf(old -> now - old.retiredAt >= TimeUnit.MILLISECONDS.toNanos(retentionMillis));
+
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(renderDirectory, "{catalog,rendering}-*")) {
+            for(Path file : files) {
+                if(!isPartOf(rendering, file) && retired.stream().noneMatch(old -> isPartOf(old.rendering, file))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops serving the current rendering, keeping its files for transfers
+     * that were already handed them.
+     */
+    private void retire() {
+        if(current != null) {
+            retired.add(new Retired(current, System.nanoTime()));
+            current = null;
+        }
+    }
+
+    private static boolean isPartOf(Rendering rendering, Path file) {
+        return rendering != null && (file.equals(rendering.getJson()) || file.equals(rendering.getGzip()));
+    }
+
+    private static final class Retired {
+        final Rendering rendering;
+        final long retiredAt;
+
+        Retired(Rendering rendering, long retiredAt) {
+            this.rendering = rendering;
+            this.retiredAt = retiredAt;
+        }
+    }
+
+    /**
+     * A rendered catalog: the ETag of the JSON, the JSON file and, when
+     * compression is on, the gzipped file. The gzipped one is a different
+     * representation and is served with its own ETag. Every change up to
+     * {@code sequence} is in it, later ones may be.
+     */
+    @Data
+    public static final class Rendering {
+        private final String etag;
+        private final Path json;
+        private final long jsonLength;
+        private final Path gzip;
+        private final long gzipLength;
+        private final long sequence;
+
+        public String getGzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.beerhouse.adapters.index;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory view of which beer owns which name. A Bloom filter answers most
+ * "is this name free" questions without touching the exact maps, which
+ * resolve the filter's false positives. A trie of the same names answers
+ * prefix lookups.
+ */
+class BeerNameIndex {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final ConcurrentMap<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    // Adds hold the read lock so the filter can be rebuilt without missing any
+    private final ReadWriteLock filterLock = new ReentrantReadWriteLock();
+    private final AtomicInteger filterInsertions = new AtomicInteger();
+    private volatile int filterCapacity;
+    private volatile BloomFilter filter;
+
+    // Readers use whichever snapshot is current, writers swap in a new one
+    private final AtomicReference<BeerNameTrie> trie = new AtomicReference<>(BeerNameTrie.EMPTY);
+
+    BeerNameIndex(int expectedNames) {
+        this.filterCapacity = Math.max(expectedNames, 16);
+        this.filter = new BloomFilter(filterCapacity, FALSE_POSITIVE_RATE);
+    }
+
+    boolean contains(String name) {
+        if(name == null || !filter.mightContain(name)) {
+            return false;
+        }
+        return idsByName.containsKey(name);
+    }
+
+    Integer idOf(String name) {
+        if(name == null || !filter.mightContain(name)) {
+            return null;
+        }
+        return idsByName.get(name);
+    }
+
+    List<String> namesStartingWith(String prefix, int limit) {
+        return trie.get().startingWith(prefix, limit);
+    }
+
+    void put(int id, String name) {
+        String previousName = namesById.put(id, name);
+        if(previousName != null && !previousName.equals(name)) {
+            idsByName.remove(previousName, id);
+            trie.updateAndGet(names -> names.without(previousName).with(name));
+        } else if(previousName == null) {
+            trie.updateAndGet(names -> names.with(name));
+        }
+        idsByName.put(name, id);
+
+        filterLock.readLock().lock();
+        try {
+            filter.add(name);
+        } finally {
+            filterLock.readLock().unlock();
+        }
+
+        if(filterInsertions.incrementAndGet() > filterCapacity) {
+            rebuildFilter();
+        }
+    }
+
+    void remove(int id) {
+        String name = namesById.remove(id);
+        if(name != null) {
+            idsByName.remove(name, id);
+            trie.updateAndGet(names -> names.without(name));
+        }
+    }
+
+    int size() {
+        return idsByName.size();
+    }
+
+    /**
+     * Bloom filters can't forget names, so renames and deletes slowly fill it
+     * up. Once it has seen more names than it was sized for it is rebuilt
+     * from the live names with room to grow.
+     */
+    private void rebuildFilter() {
+        filterLock.writeLock().lock();
+        try {
+            if(filterInsertions.get() <= filterCapacity) {
+                return;
+            }
+
+            int capacity = Math.max(filterCapacity, idsByName.size() * 2);
+            BloomFilter rebuilt = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+            for(String name : idsByName.keySet()) {
+                rebuilt.add(name);
+            }
+
+            filter = rebuilt;
+            filterCapacity = capacity;
+            filterInsertions.set(idsByName.size());
+        } finally {
+            filterLock.writeLock().unlock();
+        }
+    }
+}
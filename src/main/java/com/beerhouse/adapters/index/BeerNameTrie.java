@@ -0,0 +1,230 @@
+package com.beerhouse.adapters.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable radix trie of beer names keyed by their folded form (lower case,
+ * no accents). Edges hold whole runs of characters, so there is about one
+ * node per name instead of one per character. Adding or removing a name
+ * copies only the nodes on its path; everything else is shared with the
+ * previous trie, which stays valid for the readers still holding it.
+ */
+final class BeerNameTrie {
+
+    static final BeerNameTrie EMPTY = new BeerNameTrie(new Node(new String[0], new Node[0], new String[0]));
+
+    private final Node root;
+
+    private BeerNameTrie(Node root) {
+        this.root = root;
+    }
+
+    BeerNameTrie with(String name) {
+        return new BeerNameTrie(root.with(BeerTokenizer.fold(name), 0, name));
+    }
+
+    BeerNameTrie without(String name) {
+        Node newRoot = root.without(BeerTokenizer.fold(name), 0, name);
+        if(newRoot == root) {
+            return this;
+        }
+        return new BeerNameTrie(newRoot == null ? EMPTY.root : newRoot);
+    }
+
+    /**
+     * Up to {@code limit} names starting with the prefix, in alphabetical
+     * order of their folded form.
+     */
+    List<String> startingWith(String prefix, int limit) {
+        String key = BeerTokenizer.fold(prefix);
+        List<String> names = new ArrayList<>(Math.min(limit, 16));
+
+        Node node = root;
+        int position = 0;
+        while(position < key.length()) {
+            int edge = node.edgeFor(key.charAt(position));
+            if(edge < 0) {
+                return names;
+            }
+
+            String label = node.labels[edge];
+            int common = commonPrefix(label, key, position);
+            if(position + common == key.length()) {
+                // The prefix ends on this edge, everything below it matches
+                node = node.children[edge];
+                break;
+            }
+            if(common < label.length()) {
+                return names;
+            }
+
+            node = node.children[edge];
+            position += label.length();
+        }
+
+        node.collect(names, limit);
+        return names;
+    }
+
+    private static int commonPrefix(String label, String key, int position) {
+        int length = Math.min(label.length(), key.length() - position);
+        int common = 0;
+        while(common < length && label.charAt(common) == key.charAt(position + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Edges are sorted by their first character, which no two edges of a
+     * node share. {@code names} holds the names whose key ends here; there
+     * is more than one only when names differ just in case or accents.
+     */
+    private static final class Node {
+        final String[] labels;
+        final Node[] children;
+        final String[] names;
+
+        Node(String[] labels, Node[] children, String[] names) {
+            this.labels = labels;
+            this.children = children;
+            this.names = names;
+        }
+
+        int edgeFor(char first) {
+            int low = 0;
+            int high = labels.length - 1;
+            while(low <= high) {
+                int middle = (low + high) >>> 1;
+                char middleFirst = labels[middle].charAt(0);
+                if(middleFirst < first) {
+                    low = middle + 1;
+                } else if(middleFirst > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        Node with(String key, int position, String name) {
+            if(position == key.length()) {
+                if(Arrays.asList(names).contains(name)) {
+                    return this;
+                }
+                String[] newNames = Arrays.copyOf(names, names.length + 1);
+                newNames[names.length] = name;
+                Arrays.sort(newNames);
+                return new Node(labels, children, newNames);
+            }
+
+            int edge = edgeFor(key.charAt(position));
+            if(edge < 0) {
+                Node leaf = new Node(new String[0], new Node[0], new String[] {name});
+                return withEdge(-edge - 1, key.substring(position), leaf);
+            }
+
+            String label = labels[edge];
+            int common = commonPrefix(label, key, position);
+            if(common == label.length()) {
+                return replaceEdge(edge, label, children[edge].with(key, position + common, name));
+            }
+
+            // The key leaves the edge half way: split it at the divergence point
+            Node split = new Node(new String[] {label.substring(common)},
+                    new Node[] {children[edge]}, new String[0]);
+            split = split.with(key, position + common, name);
+            return replaceEdge(edge, label.substring(0, common), split);
+        }
+
+        /**
+         * Returns this node when the name is not in the trie, and null when
+         * the node is left with neither names nor edges.
+         */
+        Node without(String key, int position, String name) {
+            if(position == key.length()) {
+                int index = Arrays.asList(names).indexOf(name);
+                if(index < 0) {
+                    return this;
+                }
+                String[] newNames = new String[names.length - 1];
+                System.arraycopy(names, 0, newNames, 0, index);
+                System.arraycopy(names, index + 1, newNames, index, names.length - index - 1);
+                if(newNames.length == 0 && labels.length == 0) {
+                    return null;
+                }
+                return new Node(labels, children, newNames);
+            }
+
+            int edge = edgeFor(key.charAt(position));
+            if(edge < 0 || !key.startsWith(labels[edge], position)) {
+                return this;
+            }
+
+            Node child = children[edge];
+            Node newChild = child.without(key, position + labels[edge].length(), name);
+            if(newChild == child) {
+                return this;
+            }
+            if(newChild == null) {
+                if(names.length == 0 && labels.length == 1) {
+                    return null;
+                }
+                return withoutEdge(edge);
+            }
+            if(newChild.names.length == 0 && newChild.labels.length == 1) {
+                // A node with no names and a single edge folds into its parent's edge
+                return replaceEdge(edge, labels[edge] + newChild.labels[0], newChild.children[0]);
+            }
+            return replaceEdge(edge, labels[edge], newChild);
+        }
+
+        void collect(List<String> into, int limit) {
+            for(String name : names) {
+                if(into.size() == limit) {
+                    return;
+                }
+                into.add(name);
+            }
+            for(Node child : children) {
+                if(into.size() == limit) {
+                    return;
+                }
+                child.collect(into, limit);
+            }
+        }
+
+        private Node withEdge(int index, String label, Node child) {
+            String[] newLabels = new String[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newLabels[index] = label;
+            newChildren[index] = child;
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            return new Node(newLabels, newChildren, names);
+        }
+
+        private Node withoutEdge(int index) {
+            String[] newLabels = new String[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            return new Node(newLabels, newChildren, names);
+        }
+
+        private Node replaceEdge(int index, String label, Node child) {
+            String[] newLabels = labels.clone();
+            Node[] newChildren = children.clone();
+            newLabels[index] = label;
+            newChildren[index] = child;
+            return new Node(newLabels, newChildren, names);
+        }
+    }
+}
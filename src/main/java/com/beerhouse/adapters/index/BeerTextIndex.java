@@ -0,0 +1,214 @@
+package com.beerhouse.adapters.index;
+
+import com.beerhouse.domain.model.Beer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over the name, category and ingredients of every beer.
+ * A term found in the name weighs more than one found in the category,
+ * which weighs more than one found in the ingredients.
+ */
+class BeerTextIndex {
+
+    static final int NAME_WEIGHT = 4;
+    static final int CATEGORY_WEIGHT = 2;
+    static final int INGREDIENTS_WEIGHT = 1;
+
+    private static final int MAX_QUERY_TERMS = 32;
+
+    private final Map<String, PostingList> postingsByTerm = new HashMap<>();
+    private final Map<Integer, String[]> termsById = new HashMap<>();
+
+    // Searches run in parallel, writes take turns
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    void put(Beer beer) {
+        Map<String, Integer> weights = new HashMap<>();
+        addTerms(weights, beer.getName(), NAME_WEIGHT);
+        addTerms(weights, beer.getCategory(), CATEGORY_WEIGHT);
+        addTerms(weights, beer.getIngredients(), INGREDIENTS_WEIGHT);
+
+        lock.writeLock().lock();
+        try {
+            removeTerms(beer.getId());
+
+            for(Map.Entry<String, Integer> term : weights.entrySet()) {
+                postingsByTerm.computeIfAbsent(term.getKey(), key -> new PostingList())
+                        .put(beer.getId(), term.getValue());
+            }
+            termsById.put(beer.getId(), weights.keySet().toArray(new String[0]));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeTerms(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the beers holding any of the terms of the query, best first:
+     * beers matching more terms come first, then those with the higher
+     * summed weight, then the older ones.
+     */
+    int[] search(String query, int limit) {
+        List<String> terms = BeerTokenizer.tokens(query);
+        if(terms.size() > MAX_QUERY_TERMS) {
+            terms = terms.subList(0, MAX_QUERY_TERMS);
+        }
+
+        if(limit <= 0) {
+            return new int[0];
+        }
+
+        long[] ranked;
+        lock.readLock().lock();
+        try {
+            List<PostingList> postings = new ArrayList<>(terms.size());
+            for(String term : terms) {
+                PostingList posting = postingsByTerm.get(term);
+                if(posting != null) {
+                    postings.add(posting);
+                }
+            }
+            ranked = rank(postings, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Arrays.sort(ranked);
+
+        int[] ids = new int[ranked.length];
+        for(int i = 0; i < ids.length; i++) {
+            ids[i] = Integer.MAX_VALUE - (int) ranked[ranked.length - 1 - i];
+        }
+        return ids;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return termsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walks the posting lists side by side, they are all sorted by id, and
+     * packs matched terms, weight and id of every hit into one long that
+     * sorts by rank. Only the best {@code limit} hits are kept, in a min-heap
+     * whose root is the worst of them, so common terms cost no full sort.
+     */
+    private static long[] rank(List<PostingList> postings, int limit) {
+        int[] cursors = new int[postings.size()];
+        long[] heap = new long[Math.min(limit, 16)];
+        int hits = 0;
+
+        while(true) {
+            boolean exhausted = true;
+            int id = 0;
+            for(int i = 0; i < cursors.length; i++) {
+                PostingList posting = postings.get(i);
+                if(cursors[i] < posting.size() && (exhausted || posting.id(cursors[i]) < id)) {
+                    id = posting.id(cursors[i]);
+                    exhausted = false;
+                }
+            }
+            if(exhausted) {
+                break;
+            }
+
+            long matchedTerms = 0;
+            long weight = 0;
+            for(int i = 0; i < cursors.length; i++) {
+                PostingList posting = postings.get(i);
+                if(cursors[i] < posting.size() && posting.id(cursors[i]) == id) {
+                    matchedTerms++;
+                    weight += posting.weight(cursors[i]);
+                    cursors[i]++;
+                }
+            }
+
+            long rank = matchedTerms << 56 | weight << 32 | (Integer.MAX_VALUE - id);
+            if(hits < limit) {
+                if(hits == heap.length) {
+                    heap = Arrays.copyOf(heap, Math.min(limit, hits * 2));
+                }
+                heap[hits] = rank;
+                siftUp(heap, hits++);
+            } else if(rank > heap[0]) {
+                heap[0] = rank;
+                siftDown(heap, hits);
+            }
+        }
+
+        return Arrays.copyOf(heap, hits);
+    }
+
+    private static void siftUp(long[] heap, int position) {
+        long rank = heap[position];
+        while(position > 0) {
+            int parent = (position - 1) >>> 1;
+            if(heap[parent] <= rank) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = rank;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long rank = heap[0];
+        int position = 0;
+        while(true) {
+            int child = 2 * position + 1;
+            if(child >= size) {
+                break;
+            }
+            if(child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if(rank <= heap[child]) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = rank;
+    }
+
+    private static void addTerms(Map<String, Integer> weights, String text, int weight) {
+        for(String term : BeerTokenizer.tokens(text)) {
+            weights.merge(term, weight, Math::max);
+        }
+    }
+
+    private void removeTerms(int id) {
+        String[] terms = termsById.remove(id);
+        if(terms == null) {
+            return;
+        }
+
+        for(String term : terms) {
+            PostingList posting = postingsByTerm.get(term);
+            posting.remove(id);
+            if(posting.size() == 0) {
+                postingsByTerm.remove(term);
+            }
+        }
+    }
+}
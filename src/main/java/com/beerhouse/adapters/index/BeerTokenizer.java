@@ -0,0 +1,42 @@
+package com.beerhouse.adapters.index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into lower case words without accents, so "Lúpulo" and
+ * "lupulo" find each other.
+ */
+final class BeerTokenizer {
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private BeerTokenizer() {
+    }
+
+    static List<String> tokens(String text) {
+        if(text == null) {
+            return new ArrayList<>();
+        }
+
+        Set<String> tokens = new LinkedHashSet<>();
+        for(String token : SEPARATORS.split(fold(text))) {
+            if(!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    static String fold(String text) {
+        return ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
+}
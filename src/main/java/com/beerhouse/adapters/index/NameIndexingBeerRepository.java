@@ -0,0 +1,148 @@
+package com.beerhouse.adapters.index;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+import com.beerhouse.domain.ports.ForwardingBeerRepositoryPort;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Answers {@link #nameExists} and {@link #suggestNames} from memory instead
+ * of asking the database. The index is seeded from the wrapped port and kept up
+ * to date by the writes going through this decorator; the unique constraint
+ * on the name column stays the final word for writes that race each other.
+ * <p>
+ * Writes to an existing beer hold a lock striped by id across both the
+ * wrapped write and the index change, so two writes to the same beer
+ * reach the index in the order the wrapped port applied them.
+ */
+public class NameIndexingBeerRepository extends ForwardingBeerRepositoryPort {
+
+    private static final int STRIPES = 64;
+
+    private final BeerNameIndex index;
+    private final Lock[] stripes = new Lock[STRIPES];
+
+    public NameIndexingBeerRepository(BeerRepositoryPort delegate, int expectedNames) {
+        super(delegate);
+        this.index = new BeerNameIndex(expectedNames);
+        for(int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public void seed() {
+        delegate.forEach(beer -> index.put(beer.getId(), beer.getName()));
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        Beer created = delegate.create(beer);
+        index.put(created.getId(), created.getName());
+        return created;
+    }
+
+    @Override
+    public Beer update(Beer beer) {
+        return locked(Collections.singleton(beer.getId()), () -> {
+            Beer updated = delegate.update(beer);
+            if(updated != null) {
+                index.put(updated.getId(), updated.getName());
+            }
+            return updated;
+        });
+    }
+
+    @Override
+    public Beer alter(int id, Map<String,Object> changes, long expectedVersion) {
+        return locked(Collections.singleton(id), () -> {
+            Beer altered = delegate.alter(id, changes, expectedVersion);
+            if(altered != null) {
+                index.put(altered.getId(), altered.getName());
+            }
+            return altered;
+        });
+    }
+
+    @Override
+    public Long delete(int id) {
+        return locked(Collections.singleton(id), () -> {
+            Long deletedRows = delegate.delete(id);
+            if(deletedRows != null && deletedRows > 0) {
+                index.remove(id);
+            }
+            return deletedRows;
+        });
+    }
+
+    @Override
+    public boolean nameExists(String name) {
+        return index.contains(name);
+    }
+
+    @Override
+    public List<String> suggestNames(String prefix, int limit) {
+        return index.namesStartingWith(prefix, limit);
+    }
+
+    @Override
+    public Map<String,Integer> idsByName(Collection<String> names) {
+        Map<String,Integer> idsByName = new HashMap<>();
+        for(String name : names) {
+            Integer id = index.idOf(name);
+            if(id != null) {
+                idsByName.put(name, id);
+            }
+        }
+        return idsByName;
+    }
+
+    @Override
+    public BeerBatchWrite applyBatch(List<Beer> creates, List<Beer> updates, List<Integer> deletes) {
+        List<Integer> ids = new ArrayList<>(deletes);
+        updates.forEach(beer -> ids.add(beer.getId()));
+
+        return locked(ids, () -> {
+            BeerBatchWrite written = delegate.applyBatch(creates, updates, deletes);
+
+            deletes.forEach(index::remove);
+            written.getUpdated().forEach(beer -> index.put(beer.getId(), beer.getName()));
+            written.getCreated().forEach(beer -> index.put(beer.getId(), beer.getName()));
+
+            return written;
+        });
+    }
+
+    @Override
+    public void restore(List<Beer> beers) {
+        delegate.restore(beers);
+        beers.forEach(beer -> index.put(beer.getId(), beer.getName()));
+    }
+
+    /**
+     * Takes the stripes of the given ids in ascending order, so batches
+     * sharing stripes cannot deadlock each other.
+     */
+    private <T> T locked(Collection<Integer> ids, Supplier<T> write) {
+        SortedSet<Integer> held = new TreeSet<>();
+        ids.forEach(id -> held.add(Math.floorMod(id, STRIPES)));
+
+        held.forEach(stripe -> stripes[stripe].lock());
+        try {
+            return write.get();
+        } finally {
+            held.forEach(stripe -> stripes[stripe].unlock());
+        }
+    }
+}
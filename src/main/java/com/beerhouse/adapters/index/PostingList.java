@@ -0,0 +1,57 @@
+package com.beerhouse.adapters.index;
+
+import java.util.Arrays;
+
+/**
+ * Ids of the beers holding one term, sorted ascending, with the weight the
+ * term carries for each of them. New beers get higher ids, so adds are
+ * nearly always appends.
+ */
+final class PostingList {
+
+    private int[] ids = new int[4];
+    private int[] weights = new int[4];
+    private int size;
+
+    void put(int id, int weight) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if(position >= 0) {
+            weights[position] = weight;
+            return;
+        }
+
+        int insertAt = -position - 1;
+        if(size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            weights = Arrays.copyOf(weights, size * 2);
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        System.arraycopy(weights, insertAt, weights, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        weights[insertAt] = weight;
+        size++;
+    }
+
+    void remove(int id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if(position < 0) {
+            return;
+        }
+
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        System.arraycopy(weights, position + 1, weights, position, size - position - 1);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int id(int position) {
+        return ids[position];
+    }
+
+    int weight(int position) {
+        return weights[position];
+    }
+}
@@ -0,0 +1,109 @@
+package com.beerhouse.adapters.index;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+import com.beerhouse.domain.ports.ForwardingBeerRepositoryPort;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers {@link #search} from an in-memory inverted index instead of
+ * scanning the ingredients of every beer. The index is seeded from the
+ * wrapped port and kept up to date by the writes going through this
+ * decorator; only the beers found are loaded, with one query.
+ */
+public class TextIndexingBeerRepository extends ForwardingBeerRepositoryPort {
+
+    private final BeerTextIndex index = new BeerTextIndex();
+
+    public TextIndexingBeerRepository(BeerRepositoryPort delegate) {
+        super(delegate);
+    }
+
+    public void seed() {
+        delegate.forEach(index::put);
+    }
+
+    @Override
+    public List<Beer> search(String query, int limit) {
+        int[] ids = index.search(query, limit);
+        if(ids.length == 0) {
+            return new ArrayList<>();
+        }
+
+        List<Integer> idList = new ArrayList<>(ids.length);
+        for(int id : ids) {
+            idList.add(id);
+        }
+
+        Map<Integer, Beer> beersById = new HashMap<>();
+        for(Beer beer : delegate.retrieveByIds(idList)) {
+            beersById.put(beer.getId(), beer);
+        }
+
+        // Keeps the ranking of the index, beers deleted meanwhile are skipped
+        List<Beer> results = new ArrayList<>(ids.length);
+        for(int id : ids) {
+            Beer beer = beersById.get(id);
+            if(beer != null) {
+                results.add(beer);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        Beer created = delegate.create(beer);
+        index.put(created);
+        return created;
+    }
+
+    @Override
+    public Beer update(Beer beer) {
+        Beer updated = delegate.update(beer);
+        if(updated != null) {
+            index.put(updated);
+        }
+        return updated;
+    }
+
+    @Override
+    public Beer alter(int id, Map<String,Object> changes, long expectedVersion) {
+        Beer altered = delegate.alter(id, changes, expectedVersion);
+        if(altered != null) {
+            index.put(altered);
+        }
+        return altered;
+    }
+
+    @Override
+    public Long delete(int id) {
+        Long deletedRows = delegate.delete(id);
+        if(deletedRows != null && deletedRows > 0) {
+            index.remove(id);
+        }
+        return deletedRows;
+    }
+
+    @Override
+    public BeerBatchWrite applyBatch(List<Beer> creates, List<Beer> updates, List<Integer> deletes) {
+        BeerBatchWrite written = delegate.applyBatch(creates, updates, deletes);
+
+        deletes.forEach(index::remove);
+        written.getUpdated().forEach(index::put);
+        written.getCreated().forEach(index::put);
+
+        return written;
+    }
+
+    @Override
+    public void restore(List<Beer> beers) {
+        delegate.restore(beers);
+        beers.forEach(index::put);
+    }
+}
@@ -0,0 +1,71 @@
+package com.beerhouse.adapters.journal;
+
+import com.beerhouse.domain.model.Beer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary form of a beer shared by the journal and the snapshots: id,
+ * version, fixed-point price and alcohol content, then the strings as
+ * length prefixed UTF-8.
+ */
+public final class BeerCodec {
+
+    private BeerCodec() {
+    }
+
+    public static int encodedSize(Beer beer) {
+        return Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES
+                + encodedSize(beer.getName())
+                + encodedSize(beer.getIngredients())
+                + encodedSize(beer.getCategory());
+    }
+
+    public static void encode(Beer beer, ByteBuffer target) {
+        target.putInt(beer.getId());
+        target.putLong(beer.getVersion());
+        target.putLong(beer.getPriceCents());
+        target.putInt(beer.getAlcoholBasisPoints());
+        putString(beer.getName(), target);
+        putString(beer.getIngredients(), target);
+        putString(beer.getCategory(), target);
+    }
+
+    public static Beer decode(ByteBuffer source) {
+        return Beer.builder()
+                .id(source.getInt())
+                .version(source.getLong())
+                .priceCents(source.getLong())
+                .alcoholBasisPoints(source.getInt())
+                .name(getString(source))
+                .ingredients(getString(source))
+                .category(getString(source))
+                .build();
+    }
+
+    private static int encodedSize(String text) {
+        return Integer.BYTES + (text == null ? 0 : text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    // A length of -1 stands for null
+    private static void putString(String text, ByteBuffer target) {
+        if(text == null) {
+            target.putInt(-1);
+            return;
+        }
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        target.putInt(encoded.length);
+        target.put(encoded);
+    }
+
+    private static String getString(ByteBuffer source) {
+        int length = source.getInt();
+        if(length < 0) {
+            return null;
+        }
+        byte[] encoded = new byte[length];
+        source.get(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+}
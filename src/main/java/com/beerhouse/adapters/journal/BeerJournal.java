@@ -0,0 +1,234 @@
+package com.beerhouse.adapters.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of records written through a memory mapping, so that an
+ * append is a copy into the page cache instead of a system call. The file
+ * is mapped one region at a time and a new region is mapped past the last
+ * record whenever the next one does not fit.
+ *
+ * Records are framed as their length, the CRC32 of their body and the body.
+ * The unwritten part of a region reads as zeros, so replay stops at the
+ * first zero length, or at the first bad checksum when a crash cut a record
+ * short, and appending resumes from there.
+ */
+final class BeerJournal implements Closeable {
+
+    private static final int HEADER = Integer.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final long regionSize;
+    private final ScheduledFuture<?> flusher;
+
+    // Guarded by this
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long writePosition;
+
+    private final Object forceMonitor = new Object();
+    // Guarded by forceMonitor
+    private long durablePosition;
+    private boolean closed;
+
+    private BeerJournal(FileChannel channel, FsyncPolicy fsyncPolicy, long regionSize, long writePosition,
+                        ScheduledExecutorService scheduler, long flushIntervalMillis) {
+        this.channel = channel;
+        this.fsyncPolicy = fsyncPolicy;
+        this.regionSize = regionSize;
+        this.regionStart = writePosition;
+        this.writePosition = writePosition;
+        this.durablePosition = writePosition;
+        this.flusher = fsyncPolicy == FsyncPolicy.ALWAYS ? null : scheduler.scheduleWithFixedDelay(
+                this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the journal, creating it if needed, after handing the body of
+     * every intact record to {@code replay} in the order they were written.
+     */
+    static BeerJournal open(Path path, FsyncPolicy fsyncPolicy, long regionSize,
+                            ScheduledExecutorService scheduler, long flushIntervalMillis,
+                            Consumer<ByteBuffer> replay) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = replay(channel, replay);
+            return new BeerJournal(channel, fsyncPolicy, regionSize, end, scheduler, flushIntervalMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands the body of every intact record to {@code replay} without
+     * opening the journal for writing.
+     */
+    static void replay(Path path, Consumer<ByteBuffer> replay) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            replay(channel, replay);
+        }
+    }
+
+    private static long replay(FileChannel channel, Consumer<ByteBuffer> replay) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        CRC32 crc = new CRC32();
+
+        while(position + HEADER <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if(length <= 0 || length > size - position - HEADER) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(channel, body, position + HEADER);
+            crc.reset();
+            crc.update(body.array());
+            if((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            body.flip();
+            replay.accept(body);
+            position += HEADER + length;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+        while(target.hasRemaining()) {
+            if(channel.read(target, position + target.position()) < 0) {
+                throw new IOException("Journal ended while reading a record");
+            }
+        }
+    }
+
+    /**
+     * Appends a record and returns the journal position just past it, to be
+     * handed to {@link #awaitDurable}.
+     */
+    synchronized long append(byte[] body) throws IOException {
+        int size = HEADER + body.length;
+        if(region == null || writePosition + size > regionStart + region.capacity()) {
+            mapRegionAtEnd(size);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        ByteBuffer record = region.duplicate();
+        record.position((int) (writePosition - regionStart));
+        record.putInt(body.length);
+        record.putInt((int) crc.getValue());
+        record.put(body);
+
+        writePosition += size;
+        return writePosition;
+    }
+
+    synchronized long size() {
+        return writePosition;
+    }
+
+    /**
+     * Returns once the journal up to {@code position} is as durable as the
+     * fsync policy promises.
+     */
+    void awaitDurable(long position) throws IOException {
+        switch (fsyncPolicy) {
+            case ALWAYS:
+                force(position);
+                break;
+            case GROUP:
+                synchronized (forceMonitor) {
+                    while(durablePosition < position && !closed) {
+                        try {
+                            forceMonitor.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted waiting for the journal to be forced");
+                        }
+                    }
+                }
+                break;
+            case NONE:
+                break;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(flusher != null) {
+            flusher.cancel(false);
+        }
+        force(Long.MAX_VALUE);
+        synchronized (forceMonitor) {
+            closed = true;
+            forceMonitor.notifyAll();
+        }
+        channel.close();
+    }
+
+    /**
+     * Forces everything appended so far unless {@code position} already is
+     * durable. Forces run one at a time; whoever waited behind one usually
+     * finds their record covered by it.
+     */
+    private void force(long position) throws IOException {
+        synchronized (forceMonitor) {
+            if(durablePosition >= position) {
+                return;
+            }
+
+            long target;
+            MappedByteBuffer current;
+            synchronized (this) {
+                target = writePosition;
+                current = region;
+            }
+            if(target == durablePosition) {
+                return;
+            }
+            // Earlier regions were forced when they were replaced
+            current.force();
+            durablePosition = target;
+            forceMonitor.notifyAll();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            force(Long.MAX_VALUE);
+        } catch (IOException | RuntimeException e) {
+            // Writers waiting on a group commit keep waiting and the next run retries
+        }
+    }
+
+    private void mapRegionAtEnd(int recordSize) throws IOException {
+        if(region != null) {
+            region.force();
+        }
+        regionStart = writePosition;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(regionSize, recordSize));
+    }
+}
@@ -0,0 +1,26 @@
+package com.beerhouse.adapters.journal;
+
+/**
+ * When a journaled write is acknowledged, relative to the journal reaching
+ * the disk.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Each write forces the journal before returning. Writers arriving while
+     * a force is running share the next one.
+     */
+    ALWAYS,
+
+    /**
+     * Writes wait for the next periodic force, so one force covers every
+     * write of the interval at the cost of up to one interval of latency.
+     */
+    GROUP,
+
+    /**
+     * Writes return at once and the journal is forced periodically; a crash
+     * can lose up to one interval of acknowledged writes.
+     */
+    NONE
+}
@@ -0,0 +1,498 @@
+package com.beerhouse.adapters.journal;
+
+import com.beerhouse.adapters.memory.ColumnarBeerRepository;
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.ports.ForwardingBeerRepositoryPort;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Makes the in-memory columnar store durable. Reads go straight to the
+ * store; every write is applied to it and then appended to a
+ * {@link BeerJournal} as the full resulting row (or the deleted id), and
+ * is acknowledged once the journal is as durable as the {@link FsyncPolicy}
+ * promises. Deletes are appended first and applied after, since a deleted
+ * row cannot be put back in place.
+ *
+ * A write whose record cannot be appended is undone before the write lock
+ * is released, so no reader sees it. A record that cannot be made durable
+ * may already have been built upon by later writes, so then every further
+ * write is refused until a restart replays what the journal holds.
+ *
+ * Once the journal passes a size threshold it is compacted: a new journal
+ * generation is started and a snapshot of the whole catalog is written
+ * next to it, after which the older files are deleted. Writes only pause
+ * for the switch of journals. The snapshot is read while writes go on, so
+ * it may already contain some writes of the new journal; replaying them on
+ * top of it is harmless because every record carries the whole row.
+ *
+ * On startup the latest snapshot is loaded and every journal from its
+ * generation on is replayed. A failed compaction is logged and counted;
+ * until one succeeds the journal keeps growing.
+ */
+@ManagedResource(objectName = "com.beerhouse:type=Journal,name=beers")
+public class JournalingBeerRepository extends ForwardingBeerRepositoryPort implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalingBeerRepository.class);
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte BATCH = 3;
+
+    private static final int SNAPSHOT_MAGIC = 0x42454552;
+    private static final long REGION_SIZE = 16L << 20;
+    private static final Pattern FILE_NAME = Pattern.compile("(journal|snapshot)-(\\d+)\\.(log|bin|tmp)");
+
+    private final ColumnarBeerRepository store;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long flushIntervalMillis;
+    private final long snapshotThresholdBytes;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            daemon("beer-journal-flusher"));
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(daemon("beer-journal-snapshotter"));
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    private final Object snapshotMonitor = new Object();
+    private final AtomicLong snapshotFailures = new AtomicLong();
+    private volatile String lastSnapshotFailure;
+
+    // Orders the writes to the store and the journal the same way
+    private final Lock writeLock = new ReentrantLock();
+    private BeerJournal journal;
+    private long generation;
+    private volatile IOException failure;
+
+    public JournalingBeerRepository(ColumnarBeerRepository store, Path directory, FsyncPolicy fsyncPolicy,
+                                    long flushIntervalMillis, long snapshotThresholdBytes) {
+        super(store);
+        this.store = store;
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.snapshotThresholdBytes = snapshotThresholdBytes;
+    }
+
+    /**
+     * Rebuilds the catalog from the directory, creating it if needed, and
+     * opens the journal for writing.
+     */
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        TreeMap<Long, Path> journals = new TreeMap<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for(Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if(matcher.matches() && matcher.group(3).equals("tmp")) {
+                    // A snapshot that was never finished
+                    Files.delete(file);
+                } else if(matcher.matches()) {
+                    long fileGeneration = Long.parseLong(matcher.group(2));
+                    (matcher.group(1).equals("journal") ? journals : snapshots).put(fileGeneration, file);
+                }
+            }
+        }
+
+        long first = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        if(!snapshots.isEmpty()) {
+            loadSnapshot(snapshots.lastEntry().getValue());
+        }
+
+        generation = Math.max(first, journals.isEmpty() ? 0 : journals.lastKey());
+        for(Map.Entry<Long, Path> entry : journals.tailMap(first).entrySet()) {
+            if(entry.getKey() != generation) {
+                BeerJournal.replay(entry.getValue(), this::replay);
+            }
+        }
+        journal = openJournal(generation, true);
+
+        // Left behind by a compaction that was cut short
+        deleteBefore(first);
+    }
+
+    /**
+     * Compacts the journal now instead of waiting for the size threshold.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotMonitor) {
+            long snapshotGeneration;
+            int lastId;
+            writeLock.lock();
+            try {
+                BeerJournal previous = journal;
+                snapshotGeneration = generation + 1;
+                journal = openJournal(snapshotGeneration, false);
+                generation = snapshotGeneration;
+                // Ids above this one are created in the new journal and replayed from it
+                lastId = store.lastId();
+                previous.close();
+            } finally {
+                writeLock.unlock();
+            }
+
+            writeSnapshot(snapshotGeneration, lastId);
+            deleteBefore(snapshotGeneration);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        writeLock.lock();
+        try {
+            journal.close();
+        } finally {
+            writeLock.unlock();
+            flusher.shutdown();
+        }
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        return journaled(() -> {
+            Beer created = store.create(beer);
+            return new Staged<>(created, putRecord(created), () -> store.delete(created.getId()), NOTHING);
+        });
+    }
+
+    @Override
+    public Beer update(Beer beer) {
+        return journaled(() -> put(beer.getId(), () -> store.update(beer)));
+    }
+
+    @Override
+    public Beer alter(int id, Map<String,Object> changes, long expectedVersion) {
+        return journaled(() -> put(id, () -> store.alter(id, changes, expectedVersion)));
+    }
+
+    @Override
+    public Long delete(int id) {
+        return journaled(() -> store.retrieveOne(id) == null
+                ? new Staged<>(0L, null, NOTHING, NOTHING)
+                : new Staged<>(1L, deleteRecord(id), NOTHING, () -> store.delete(id)));
+    }
+
+    /**
+     * The whole batch is one record, so after a crash it is replayed
+     * entirely or not at all. The deletes are applied once
+     * the record is appended, just after the creates and updates.
+     */
+    @Override
+    public BeerBatchWrite applyBatch(List<Beer> creates, List<Beer> updates, List<Integer> deletes) {
+        return journaled(() -> {
+            List<Beer> before = store.retrieveByIds(updates.stream().map(Beer::getId).collect(Collectors.toList()));
+            BeerBatchWrite written = store.applyBatch(creates, updates, Collections.emptyList());
+            List<Beer> puts = new ArrayList<>(written.getCreated());
+            puts.addAll(written.getUpdated());
+
+            return new Staged<>(written, batchRecord(puts, deletes), () -> {
+                written.getCreated().forEach(beer -> store.delete(beer.getId()));
+                store.restore(before);
+            }, () -> deletes.forEach(store::delete));
+        });
+    }
+
+    @Override
+    public void restore(List<Beer> beers) {
+        journaled(() -> {
+            store.restore(beers);
+            return new Staged<>(beers, batchRecord(beers, Collections.emptyList()),
+                    () -> beers.forEach(beer -> store.delete(beer.getId())), NOTHING);
+        });
+    }
+
+    /**
+     * An update or alter of the beer, staged with the row it replaces.
+     */
+    private Staged<Beer> put(int id, Supplier<Beer> write) {
+        Beer before = store.retrieveOne(id);
+        Beer written = write.get();
+        return written == null
+                ? new Staged<>(null, null, NOTHING, NOTHING)
+                : new Staged<>(written, putRecord(written), () -> store.restore(before), NOTHING);
+    }
+
+    /**
+     * Stages the write and appends its record under the write lock, undoing
+     * the write if the record cannot be appended, then waits for the record
+     * to be durable outside of it so that concurrent writers can share a
+     * force. A null record means nothing changed.
+     */
+    private <T> T journaled(Supplier<Staged<T>> write) {
+        IOException failed = failure;
+        if(failed != null) {
+            throw new IllegalStateException("The journal could not be made durable, restart to recover", failed);
+        }
+
+        Staged<T> staged;
+        BeerJournal target;
+        long position;
+
+        writeLock.lock();
+        try {
+            staged = write.get();
+            if(staged.getRecord() == null) {
+                return staged.getResult();
+            }
+            target = journal;
+            try {
+                position = target.append(staged.getRecord());
+            } catch (IOException | RuntimeException e) {
+                staged.getUndo().run();
+                throw e;
+            }
+            staged.getApply().run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+
+        try {
+            target.awaitDurable(position);
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        }
+
+        if(position > snapshotThresholdBytes && snapshotScheduled.compareAndSet(false, true)) {
+            snapshotter.execute(this::snapshotQuietly);
+        }
+        return result;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            // The journal is still complete, the next write past the threshold retries
+            snapshotFailures.incrementAndGet();
+            lastSnapshotFailure = e.toString();
+            log.warn("Compacting the journal in {} failed, it grows until a compaction succeeds", directory, e);
+        } finally {
+            snapshotScheduled.set(false);
+        }
+    }
+
+    @ManagedAttribute(description = "Bytes in the current journal")
+    public long getJournalSize() {
+        writeLock.lock();
+        try {
+            return journal.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Compactions that failed since startup")
+    public long getSnapshotFailureCount() {
+        return snapshotFailures.get();
+    }
+
+    @ManagedAttribute(description = "The error of the last failed compaction, if any")
+    public String getLastSnapshotFailure() {
+        return lastSnapshotFailure;
+    }
+
+    private void replay(ByteBuffer record) {
+        byte type = record.get();
+        switch (type) {
+            case PUT:
+                store.restore(BeerCodec.decode(record));
+                break;
+            case DELETE:
+                store.delete(record.getInt());
+                break;
+            case BATCH:
+                for(int puts = record.getInt(); puts > 0; puts--) {
+                    store.restore(BeerCodec.decode(record));
+                }
+                for(int deletes = record.getInt(); deletes > 0; deletes--) {
+                    store.delete(record.getInt());
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private BeerJournal openJournal(long journalGeneration, boolean replay) throws IOException {
+        return BeerJournal.open(directory.resolve("journal-" + journalGeneration + ".log"), fsyncPolicy,
+                REGION_SIZE, flusher, flushIntervalMillis, replay ? this::replay : record -> {
+                    throw new IllegalStateException("New journal " + journalGeneration + " is not empty");
+                });
+    }
+
+    /**
+     * Beers as length prefixed records in id order, a zero length, the last
+     * id handed out when the journal was switched and the CRC32 of
+     * everything before it. Written to a temporary file that is moved in
+     * place once forced.
+     */
+    private void writeSnapshot(long snapshotGeneration, int lastId) throws IOException {
+        Path temporary = directory.resolve("snapshot-" + snapshotGeneration + ".tmp");
+        CRC32 crc = new CRC32();
+
+        try(DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), crc))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            try {
+                store.forEach(beer -> {
+                    ByteBuffer encoded = ByteBuffer.allocate(BeerCodec.encodedSize(beer));
+                    BeerCodec.encode(beer, encoded);
+                    try {
+                        out.writeInt(encoded.capacity());
+                        out.write(encoded.array());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.writeInt(0);
+            out.writeInt(lastId);
+            out.writeLong(crc.getValue());
+        }
+
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve("snapshot-" + snapshotGeneration + ".bin"),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void loadSnapshot(Path snapshot) throws IOException {
+        CRC32 crc = new CRC32();
+        try(DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16), crc))) {
+            if(in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(snapshot + " is not a beer snapshot");
+            }
+
+            for(int length = in.readInt(); length > 0; length = in.readInt()) {
+                byte[] encoded = new byte[length];
+                in.readFully(encoded);
+                store.restore(BeerCodec.decode(ByteBuffer.wrap(encoded)));
+            }
+            store.restoreLastId(in.readInt());
+
+            long expected = crc.getValue();
+            if(in.readLong() != expected) {
+                throw new IOException(snapshot + " is corrupt");
+            }
+        }
+    }
+
+    private void deleteBefore(long firstKept) throws IOException {
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for(Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if(matcher.matches() && Long.parseLong(matcher.group(2)) < firstKept) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static byte[] putRecord(Beer beer) {
+        ByteBuffer record = ByteBuffer.allocate(1 + BeerCodec.encodedSize(beer));
+        record.put(PUT);
+        BeerCodec.encode(beer, record);
+        return record.array();
+    }
+
+    private static byte[] deleteRecord(int id) {
+        return ByteBuffer.allocate(1 + Integer.BYTES).put(DELETE).putInt(id).array();
+    }
+
+    private static byte[] batchRecord(List<Beer> puts, List<Integer> deletes) {
+        int size = 1 + Integer.BYTES + Integer.BYTES + deletes.size() * Integer.BYTES;
+        for(Beer beer : puts) {
+            size += BeerCodec.encodedSize(beer);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(size);
+        record.put(BATCH);
+        record.putInt(puts.size());
+        for(Beer beer : puts) {
+            BeerCodec.encode(beer, record);
+        }
+        record.putInt(deletes.size());
+        for(int id : deletes) {
+            record.putInt(id);
+        }
+        return record.array();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final Runnable NOTHING = () -> { };
+
+    /**
+     * A write applied to the store, or about to be: its result, its record,
+     * what undoes it when the record cannot be appended and what is left
+     * to apply once it has been.
+     */
+    @Data
+    private static final class Staged<T> {
+        private final T result;
+        private final byte[] record;
+        private final Runnable undo;
+        private final Runnable apply;
+    }
+}
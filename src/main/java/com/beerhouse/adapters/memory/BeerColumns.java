@@ -0,0 +1,338 @@
+package com.beerhouse.adapters.memory;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerField;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The catalog as one off-heap column per field, one row per beer. Rows are
+ * appended in id order and deletes only mark the row, so the id column
+ * stays sorted and can be binary searched; {@link #compacted} drops the
+ * marked rows once they pile up. Names and ingredients live in a
+ * {@link StringArena}, categories are dictionary encoded.
+ *
+ * Not thread safe, {@link ColumnarBeerRepository} guards it.
+ */
+final class BeerColumns {
+
+    static final int NO_ROW = -1;
+
+    private int capacity;
+    private int rows;
+    private final BitSet deleted = new BitSet();
+    private int deletedRows;
+
+    private IntBuffer ids;
+    private LongBuffer versions;
+    private LongBuffer pricesCents;
+    private IntBuffer alcoholBasisPoints;
+    private IntBuffer categoryCodes;
+    private IntBuffer nameOffsets;
+    private IntBuffer nameLengths;
+    private IntBuffer nameHashes;
+    // Next row whose name has the same hash, or NO_ROW
+    private IntBuffer nameChain;
+    private IntBuffer ingredientsOffsets;
+    private IntBuffer ingredientsLengths;
+
+    private final StringArena strings;
+
+    private final Map<String, Integer> codesByCategory = new HashMap<>();
+    private final List<String> categories = new ArrayList<>();
+
+    private final IntIntHashMap rowsById;
+    private final IntIntHashMap firstRowByNameHash;
+
+    BeerColumns(int initialCapacity) {
+        this.capacity = Math.max(initialCapacity, 16);
+        this.ids = intColumn(capacity);
+        this.versions = longColumn(capacity);
+        this.pricesCents = longColumn(capacity);
+        this.alcoholBasisPoints = intColumn(capacity);
+        this.categoryCodes = intColumn(capacity);
+        this.nameOffsets = intColumn(capacity);
+        this.nameLengths = intColumn(capacity);
+        this.nameHashes = intColumn(capacity);
+        this.nameChain = intColumn(capacity);
+        this.ingredientsOffsets = intColumn(capacity);
+        this.ingredientsLengths = intColumn(capacity);
+        this.strings = new StringArena(capacity * 64);
+        this.rowsById = new IntIntHashMap(capacity);
+        this.firstRowByNameHash = new IntIntHashMap(capacity);
+    }
+
+    /**
+     * Rows ever appended, deleted ones included; valid rows are 0 until this.
+     */
+    int rowCount() {
+        return rows;
+    }
+
+    int liveCount() {
+        return rows - deletedRows;
+    }
+
+    boolean isLive(int row) {
+        return !deleted.get(row);
+    }
+
+    int id(int row) {
+        return ids.get(row);
+    }
+
+    long version(int row) {
+        return versions.get(row);
+    }
+
+    long priceCents(int row) {
+        return pricesCents.get(row);
+    }
+
+    int alcoholBasisPoints(int row) {
+        return alcoholBasisPoints.get(row);
+    }
+
+    int categoryCode(int row) {
+        return categoryCodes.get(row);
+    }
+
+    /**
+     * The code of the category, or -1 when no beer ever had it.
+     */
+    int codeOf(String category) {
+        Integer code = codesByCategory.get(category);
+        return code == null ? -1 : code;
+    }
+
+    String name(int row) {
+        return strings.read(nameOffsets.get(row), nameLengths.get(row));
+    }
+
+    String ingredients(int row) {
+        return strings.read(ingredientsOffsets.get(row), ingredientsLengths.get(row));
+    }
+
+    String category(int row) {
+        return categories.get(categoryCodes.get(row));
+    }
+
+    Beer read(int row) {
+        return Beer.builder()
+                .id(ids.get(row))
+                .name(name(row))
+                .ingredients(ingredients(row))
+                .alcoholBasisPoints(alcoholBasisPoints.get(row))
+                .priceCents(pricesCents.get(row))
+                .category(category(row))
+                .version(versions.get(row))
+                .build();
+    }
+
+    /**
+     * The beer at the row with only the given fields read, and the id and
+     * version.
+     */
+    Beer read(int row, Set<BeerField> fields) {
+        if(fields.size() == BeerField.values().length) {
+            return read(row);
+        }
+
+        Beer.BeerBuilder beer = Beer.builder()
+                .id(ids.get(row))
+                .version(versions.get(row));
+        if(fields.contains(BeerField.NAME)) {
+            beer.name(name(row));
+        }
+        if(fields.contains(BeerField.INGREDIENTS)) {
+            beer.ingredients(ingredients(row));
+        }
+        if(fields.contains(BeerField.ALCOHOL_CONTENT)) {
+            beer.alcoholBasisPoints(alcoholBasisPoints.get(row));
+        }
+        if(fields.contains(BeerField.PRICE)) {
+            beer.priceCents(pricesCents.get(row));
+        }
+        if(fields.contains(BeerField.CATEGORY)) {
+            beer.category(category(row));
+        }
+        return beer.build();
+    }
+
+    int rowOf(int id) {
+        return rowsById.get(id);
+    }
+
+    int rowOfName(String name) {
+        byte[] encoded = StringArena.encode(name);
+        for(int row = firstRowByNameHash.get(name.hashCode()); row != NO_ROW; row = nameChain.get(row)) {
+            if(strings.matches(nameOffsets.get(row), nameLengths.get(row), encoded)) {
+                return row;
+            }
+        }
+        return NO_ROW;
+    }
+
+    /**
+     * The first row, deleted or not, whose id is greater than the given one.
+     */
+    int firstRowAfter(int id) {
+        int low = 0;
+        int high = rows - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            if(ids.get(middle) <= id) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Ids must be appended in increasing order.
+     */
+    int append(Beer beer) {
+        if(rows == capacity) {
+            grow();
+        }
+
+        int row = rows++;
+        ids.put(row, beer.getId());
+        write(row, beer);
+        rowsById.put(beer.getId(), row);
+        return row;
+    }
+
+    void replace(int row, Beer beer) {
+        unlinkName(row);
+        strings.release(nameLengths.get(row) + ingredientsLengths.get(row));
+        write(row, beer);
+    }
+
+    void delete(int row) {
+        unlinkName(row);
+        strings.release(nameLengths.get(row) + ingredientsLengths.get(row));
+        rowsById.remove(ids.get(row));
+        deleted.set(row);
+        deletedRows++;
+    }
+
+    /**
+     * Worth rebuilding once a quarter of the rows are deleted or half of
+     * the string bytes are garbage.
+     */
+    boolean needsCompaction() {
+        return (deletedRows > 1024 && deletedRows * 4 > rows)
+                || (strings.garbage() > 1 << 20 && strings.garbage() * 2 > strings.used());
+    }
+
+    BeerColumns compacted() {
+        BeerColumns compacted = new BeerColumns(Math.max(liveCount() * 2, 16));
+        for(int row = 0; row < rows; row++) {
+            if(isLive(row)) {
+                compacted.append(read(row));
+            }
+        }
+        return compacted;
+    }
+
+    private void write(int row, Beer beer) {
+        versions.put(row, beer.getVersion());
+        pricesCents.put(row, beer.getPriceCents());
+        alcoholBasisPoints.put(row, beer.getAlcoholBasisPoints());
+        categoryCodes.put(row, encodeCategory(beer.getCategory()));
+
+        byte[] name = StringArena.encode(beer.getName());
+        nameOffsets.put(row, strings.append(name));
+        nameLengths.put(row, name.length);
+
+        byte[] ingredients = StringArena.encode(beer.getIngredients());
+        ingredientsOffsets.put(row, strings.append(ingredients));
+        ingredientsLengths.put(row, ingredients.length);
+
+        int hash = beer.getName().hashCode();
+        nameHashes.put(row, hash);
+        nameChain.put(row, firstRowByNameHash.get(hash));
+        firstRowByNameHash.put(hash, row);
+    }
+
+    private void unlinkName(int row) {
+        int hash = nameHashes.get(row);
+        int first = firstRowByNameHash.get(hash);
+
+        if(first == row) {
+            int next = nameChain.get(row);
+            if(next == NO_ROW) {
+                firstRowByNameHash.remove(hash);
+            } else {
+                firstRowByNameHash.put(hash, next);
+            }
+            return;
+        }
+
+        for(int previous = first; previous != NO_ROW; previous = nameChain.get(previous)) {
+            if(nameChain.get(previous) == row) {
+                nameChain.put(previous, nameChain.get(row));
+                return;
+            }
+        }
+    }
+
+    private int encodeCategory(String category) {
+        return codesByCategory.computeIfAbsent(category, key -> {
+            categories.add(key);
+            return categories.size() - 1;
+        });
+    }
+
+    private void grow() {
+        int grownCapacity = capacity * 2;
+        ids = copy(ids, intColumn(grownCapacity));
+        versions = copy(versions, longColumn(grownCapacity));
+        pricesCents = copy(pricesCents, longColumn(grownCapacity));
+        alcoholBasisPoints = copy(alcoholBasisPoints, intColumn(grownCapacity));
+        categoryCodes = copy(categoryCodes, intColumn(grownCapacity));
+        nameOffsets = copy(nameOffsets, intColumn(grownCapacity));
+        nameLengths = copy(nameLengths, intColumn(grownCapacity));
+        nameHashes = copy(nameHashes, intColumn(grownCapacity));
+        nameChain = copy(nameChain, intColumn(grownCapacity));
+        ingredientsOffsets = copy(ingredientsOffsets, intColumn(grownCapacity));
+        ingredientsLengths = copy(ingredientsLengths, intColumn(grownCapacity));
+        capacity = grownCapacity;
+    }
+
+    private IntBuffer copy(IntBuffer column, IntBuffer grown) {
+        IntBuffer used = column.duplicate();
+        used.position(0);
+        used.limit(rows);
+        grown.put(used);
+        return grown;
+    }
+
+    private LongBuffer copy(LongBuffer column, LongBuffer grown) {
+        LongBuffer used = column.duplicate();
+        used.position(0);
+        used.limit(rows);
+        grown.put(used);
+        return grown;
+    }
+
+    private static IntBuffer intColumn(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    private static LongBuffer longColumn(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+}
@@ -0,0 +1,530 @@
+package com.beerhouse.adapters.memory;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.model.BeerField;
+import com.beerhouse.domain.model.BeerFilter;
+import com.beerhouse.domain.model.exception.BeerAlreadyExistsException;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the whole catalog in memory as off-heap columns (see
+ * {@link BeerColumns}) and answers every call without JPA. Beer objects are
+ * only built for the rows a call returns; filters and sorting read the
+ * primitive columns directly.
+ *
+ * Reads share a lock, writes take it exclusively. Nothing is persisted
+ * here, the catalog starts empty and is lost on shutdown unless something
+ * like {@code JournalingBeerRepository} keeps a copy on disk.
+ */
+public class ColumnarBeerRepository implements BeerRepositoryPort {
+
+    private static final int EXPORT_CHUNK = 512;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private BeerColumns columns;
+    private int lastId;
+
+    public ColumnarBeerRepository(int initialCapacity) {
+        this.columns = new BeerColumns(initialCapacity);
+    }
+
+    @Override
+    public List<Beer> retrieveMany() {
+        List<Beer> results = retrievePage(BeerFilter.builder().build(), 0, Integer.MAX_VALUE);
+        return results.isEmpty() ? null : results;
+    }
+
+    @Override
+    public List<Beer> retrievePage(BeerFilter filter, int afterId, int limit) {
+        return retrievePage(filter, afterId, limit, EnumSet.allOf(BeerField.class));
+    }
+
+    /**
+     * Only the columns of the fields are decoded, the string ones being the
+     * expensive part.
+     */
+    @Override
+    public List<Beer> retrievePage(BeerFilter filter, int afterId, int limit, Set<BeerField> fields) {
+        lock.readLock().lock();
+        try {
+            List<Beer> results = new ArrayList<>();
+
+            int categoryCode = filter.getCategory() == null ? -1 : columns.codeOf(filter.getCategory());
+            if(filter.getCategory() != null && categoryCode == -1) {
+                return results;
+            }
+
+            for(int row = columns.firstRowAfter(afterId); row < columns.rowCount() && results.size() < limit; row++) {
+                if(columns.isLive(row) && matches(filter, categoryCode, row)) {
+                    results.add(columns.read(row, fields));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One pass over the category column keeping the best {@code limit} rows
+     * in a heap, O(N log K).
+     */
+    @Override
+    public List<Beer> retrieveByPrice(String category, boolean descending, int limit) {
+        lock.readLock().lock();
+        try {
+            int categoryCode = columns.codeOf(category);
+            if(categoryCode == -1) {
+                return new ArrayList<>();
+            }
+
+            Comparator<Integer> byPrice = Comparator
+                    .<Integer>comparingLong(row -> columns.priceCents(row))
+                    .thenComparingInt(row -> columns.id(row));
+            if(descending) {
+                byPrice = byPrice.reversed();
+            }
+
+            // The heap's head is the worst row kept so far
+            PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, byPrice.reversed());
+            for(int row = 0; row < columns.rowCount(); row++) {
+                if(columns.isLive(row) && columns.categoryCode(row) == categoryCode) {
+                    best.add(row);
+                    if(best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+
+            List<Beer> results = new ArrayList<>(best.size());
+            while(!best.isEmpty()) {
+                results.add(columns.read(best.poll()));
+            }
+            Collections.reverse(results);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands out beers in chunks so a slow consumer never holds the lock.
+     */
+    @Override
+    public void forEach(Consumer<Beer> action) {
+        int afterId = 0;
+        while(true) {
+            List<Beer> chunk = retrievePage(BeerFilter.builder().build(), afterId, EXPORT_CHUNK);
+            if(chunk.isEmpty()) {
+                return;
+            }
+            chunk.forEach(action);
+            afterId = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public Beer retrieveOne(int id) {
+        lock.readLock().lock();
+        try {
+            int row = columns.rowOf(id);
+            return row == BeerColumns.NO_ROW ? null : columns.read(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Beer> retrieveByIds(Collection<Integer> ids) {
+        lock.readLock().lock();
+        try {
+            List<Beer> results = new ArrayList<>(ids.size());
+            for(int id : ids) {
+                int row = columns.rowOf(id);
+                if(row != BeerColumns.NO_ROW) {
+                    results.add(columns.read(row));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unranked scan, like the JPA fallback; the search index decorator
+     * normally answers instead.
+     */
+    @Override
+    public List<Beer> search(String query, int limit) {
+        List<String> words = new ArrayList<>();
+        for(String word : query.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            if(!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Beer> results = new ArrayList<>();
+            for(int row = 0; row < columns.rowCount() && results.size() < limit && !words.isEmpty(); row++) {
+                if(columns.isLive(row) && containsAny(words, row)) {
+                    results.add(columns.read(row));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        lock.writeLock().lock();
+        try {
+            if(columns.rowOfName(beer.getName()) != BeerColumns.NO_ROW) {
+                throw new BeerAlreadyExistsException(beer.getName());
+            }
+
+            Beer created = beer.toBuilder().id(++lastId).version(0).build();
+            columns.append(created);
+            return created;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Beer update(Beer beer) {
+        lock.writeLock().lock();
+        try {
+            int row = columns.rowOf(beer.getId());
+            if(row == BeerColumns.NO_ROW || !isAt(row, beer.getVersion())) {
+                return null;
+            }
+            checkNameFree(beer.getName(), row);
+
+            Beer updated = beer.toBuilder().version(columns.version(row) + 1).build();
+            columns.replace(row, updated);
+            compactIfNeeded();
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Beer alter(int id, Map<String,Object> changes, long expectedVersion) {
+        lock.writeLock().lock();
+        try {
+            int row = columns.rowOf(id);
+            if(row == BeerColumns.NO_ROW || !isAt(row, expectedVersion)) {
+                return null;
+            }
+
+            Beer.BeerBuilder altered = columns.read(row).toBuilder().version(columns.version(row) + 1);
+            for(Map.Entry<String,Object> change : changes.entrySet()) {
+                Object value = change.getValue();
+                switch (change.getKey()) {
+                    case "name":
+                        checkNameFree((String) value, row);
+                        altered.name((String) value);
+                        break;
+                    case "ingredients":
+                        altered.ingredients((String) value);
+                        break;
+                    case "category":
+                        altered.category((String) value);
+                        break;
+                    case "alcoholBasisPoints":
+                        altered.alcoholBasisPoints((Integer) value);
+                        break;
+                    case "priceCents":
+                        altered.priceCents((Long) value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown beer field " + change.getKey());
+                }
+            }
+
+            Beer alteredBeer = altered.build();
+            columns.replace(row, alteredBeer);
+            compactIfNeeded();
+            return alteredBeer;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Long delete(int id) {
+        lock.writeLock().lock();
+        try {
+            int row = columns.rowOf(id);
+            if(row == BeerColumns.NO_ROW) {
+                return 0L;
+            }
+
+            columns.delete(row);
+            compactIfNeeded();
+            return 1L;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean nameExists(String name) {
+        lock.readLock().lock();
+        try {
+            return columns.rowOfName(name) != BeerColumns.NO_ROW;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scans the name column; the name index decorator normally answers
+     * instead.
+     */
+    @Override
+    public List<String> suggestNames(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            List<String> names = new ArrayList<>();
+            for(int row = 0; row < columns.rowCount(); row++) {
+                if(columns.isLive(row)) {
+                    String name = columns.name(row);
+                    if(name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                        names.add(name);
+                    }
+                }
+            }
+
+            names.sort(String.CASE_INSENSITIVE_ORDER);
+            return names.size() > limit ? new ArrayList<>(names.subList(0, limit)) : names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String,Integer> idsByName(Collection<String> names) {
+        lock.readLock().lock();
+        try {
+            Map<String,Integer> idsByName = new HashMap<>();
+            for(String name : names) {
+                int row = columns.rowOfName(name);
+                if(row != BeerColumns.NO_ROW) {
+                    idsByName.put(name, columns.id(row));
+                }
+            }
+            return idsByName;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Integer> existingIds(Collection<Integer> ids) {
+        lock.readLock().lock();
+        try {
+            Set<Integer> existingIds = new HashSet<>();
+            for(int id : ids) {
+                if(columns.rowOf(id) != BeerColumns.NO_ROW) {
+                    existingIds.add(id);
+                }
+            }
+            return existingIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * All names are checked before anything is written, so a failing batch
+     * leaves the catalog untouched. As with the database, names freed by
+     * the batch's own deletes are not available to its creates and updates.
+     */
+    @Override
+    public BeerBatchWrite applyBatch(List<Beer> creates, List<Beer> updates, List<Integer> deletes) {
+        lock.writeLock().lock();
+        try {
+            List<String> takenNames = new ArrayList<>();
+            Set<String> batchNames = new HashSet<>();
+            for(Beer beer : creates) {
+                if(columns.rowOfName(beer.getName()) != BeerColumns.NO_ROW || !batchNames.add(beer.getName())) {
+                    takenNames.add(beer.getName());
+                }
+            }
+            for(Beer beer : updates) {
+                int owner = columns.rowOfName(beer.getName());
+                if((owner != BeerColumns.NO_ROW && columns.id(owner) != beer.getId())
+                        || !batchNames.add(beer.getName())) {
+                    takenNames.add(beer.getName());
+                }
+            }
+            if(!takenNames.isEmpty()) {
+                throw new BeerAlreadyExistsException(String.join(", ", takenNames));
+            }
+
+            List<Beer> created = new ArrayList<>(creates.size());
+            for(Beer beer : creates) {
+                Beer createdBeer = beer.toBuilder().id(++lastId).version(0).build();
+                columns.append(createdBeer);
+                created.add(createdBeer);
+            }
+            List<Beer> updated = new ArrayList<>(updates.size());
+            for(Beer beer : updates) {
+                int row = columns.rowOf(beer.getId());
+                if(row != BeerColumns.NO_ROW) {
+                    Beer updatedBeer = beer.toBuilder().version(columns.version(row) + 1).build();
+                    columns.replace(row, updatedBeer);
+                    updated.add(updatedBeer);
+                }
+            }
+            for(int id : deletes) {
+                int row = columns.rowOf(id);
+                if(row != BeerColumns.NO_ROW) {
+                    columns.delete(row);
+                }
+            }
+
+            compactIfNeeded();
+            return new BeerBatchWrite(created, updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Puts a beer back under its own id, replacing the row if there is one.
+     * Used to rebuild the catalog from a persisted copy, where new ids come
+     * in increasing order. A beer whose id is below the last one but has no
+     * row was deleted after the copy was taken and is left out.
+     */
+    public void restore(Beer beer) {
+        if(beer.getVersion() == Beer.ANY_VERSION) {
+            beer = beer.toBuilder().version(0).build();
+        }
+
+        lock.writeLock().lock();
+        try {
+            int row = columns.rowOf(beer.getId());
+            if(row != BeerColumns.NO_ROW) {
+                columns.replace(row, beer);
+                compactIfNeeded();
+                return;
+            }
+            if(beer.getId() <= lastId) {
+                return;
+            }
+
+            columns.append(beer);
+            lastId = beer.getId();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void restore(List<Beer> beers) {
+        lock.writeLock().lock();
+        try {
+            beers.forEach(this::restore);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The highest id handed out so far, deleted beers included.
+     */
+    public int lastId() {
+        lock.readLock().lock();
+        try {
+            return lastId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes sure ids up to the given one are never handed out again, even
+     * when their beers are gone.
+     */
+    public void restoreLastId(int lastId) {
+        lock.writeLock().lock();
+        try {
+            this.lastId = Math.max(this.lastId, lastId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean matches(BeerFilter filter, int categoryCode, int row) {
+        if(categoryCode != -1 && columns.categoryCode(row) != categoryCode) {
+            return false;
+        }
+
+        long priceCents = columns.priceCents(row);
+        if(filter.getMinPriceCents() != null && priceCents < filter.getMinPriceCents()) {
+            return false;
+        }
+        if(filter.getMaxPriceCents() != null && priceCents > filter.getMaxPriceCents()) {
+            return false;
+        }
+
+        int alcoholBasisPoints = columns.alcoholBasisPoints(row);
+        if(filter.getMinAlcoholBasisPoints() != null && alcoholBasisPoints < filter.getMinAlcoholBasisPoints()) {
+            return false;
+        }
+        return filter.getMaxAlcoholBasisPoints() == null || alcoholBasisPoints <= filter.getMaxAlcoholBasisPoints();
+    }
+
+    private boolean containsAny(List<String> words, int row) {
+        String text = (columns.name(row) + ' ' + columns.category(row) + ' ' + columns.ingredients(row))
+                .toLowerCase(Locale.ROOT);
+        for(String word : words) {
+            if(text.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAt(int row, long expectedVersion) {
+        return expectedVersion == Beer.ANY_VERSION || columns.version(row) == expectedVersion;
+    }
+
+    private void checkNameFree(String name, int row) {
+        int owner = columns.rowOfName(name);
+        if(owner != BeerColumns.NO_ROW && owner != row) {
+            throw new BeerAlreadyExistsException(name);
+        }
+    }
+
+    private void compactIfNeeded() {
+        if(columns.needsCompaction()) {
+            columns = columns.compacted();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.beerhouse.adapters.memory;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing int to int map with linear probing, so lookups neither box
+ * nor allocate. Values must not be negative; {@link #get} answers -1 for a
+ * missing key.
+ */
+final class IntIntHashMap {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    int get(int key) {
+        for(int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            if(values[slot] == EMPTY) {
+                return EMPTY;
+            }
+            if(keys[slot] == key) {
+                return values[slot];
+            }
+        }
+    }
+
+    void put(int key, int value) {
+        if((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+
+        int slot = slotOf(key);
+        while(values[slot] != EMPTY) {
+            if(keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Shifts the entries that follow back into the freed slot instead of
+     * leaving a tombstone, so probe chains never grow with removals.
+     */
+    void remove(int key) {
+        int slot = slotOf(key);
+        while(values[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if(values[slot] == EMPTY) {
+            return;
+        }
+
+        int free = slot;
+        for(int next = (free + 1) & mask; values[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slotOf(keys[next]);
+            boolean movable = free <= next
+                    ? home <= free || home > next
+                    : home <= free && home > next;
+            if(movable) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        values[free] = EMPTY;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slotOf(int key) {
+        // Fibonacci hashing spreads sequential ids over the table
+        int hash = key * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldValues[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+        size = 0;
+    }
+}
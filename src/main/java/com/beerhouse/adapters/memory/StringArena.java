@@ -0,0 +1,79 @@
+package com.beerhouse.adapters.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Off-heap, append-only store of UTF-8 strings addressed by offset and
+ * length. Replaced strings stay behind as garbage until the owner copies
+ * the live ones into a fresh arena.
+ */
+final class StringArena {
+
+    private ByteBuffer bytes;
+    private int garbage;
+
+    StringArena(int initialCapacity) {
+        this.bytes = ByteBuffer.allocateDirect(Math.max(initialCapacity, 1024));
+    }
+
+    /**
+     * Copies the encoded string in and returns its offset.
+     */
+    int append(byte[] encoded) {
+        if(bytes.remaining() < encoded.length) {
+            grow(encoded.length);
+        }
+        int offset = bytes.position();
+        bytes.put(encoded);
+        return offset;
+    }
+
+    String read(int offset, int length) {
+        byte[] encoded = new byte[length];
+        ByteBuffer view = bytes.duplicate();
+        view.position(offset);
+        view.get(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    boolean matches(int offset, int length, byte[] encoded) {
+        if(length != encoded.length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(bytes.get(offset + i) != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void release(int length) {
+        garbage += length;
+    }
+
+    int used() {
+        return bytes.position();
+    }
+
+    int garbage() {
+        return garbage;
+    }
+
+    static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void grow(int needed) {
+        long capacity = Math.max((long) bytes.capacity() * 2, (long) bytes.position() + needed);
+        if(capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("String arena is full");
+        }
+
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+        bytes.flip();
+        grown.put(bytes);
+        bytes = grown;
+    }
+}
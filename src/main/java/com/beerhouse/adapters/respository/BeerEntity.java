@@ -4,15 +4,25 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
-import java.math.BigDecimal;
 
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "beer")
+// Backs the category and price filters of GET /beers; category lookups use
+// the leading column of the composite index, which also serves "cheapest in
+// category" in index order
+@Table(name = "beer", indexes = {
+        @Index(name = "beer_category_price_idx", columnList = "category, price_cents, id"),
+        @Index(name = "beer_price_idx", columnList = "price_cents")
+})
 public class BeerEntity {
+
+    static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy= GenerationType.IDENTITY)
+    // A pooled sequence hands out ids in blocks, which keeps JDBC batching of inserts possible
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "beer_id")
+    @SequenceGenerator(name = "beer_id", sequenceName = "beer_id_seq", allocationSize = ID_ALLOCATION_SIZE)
     @Column(unique = true,updatable = false,nullable = false)
     private Integer id;
 
@@ -22,13 +32,19 @@ public class BeerEntity {
     @Column(nullable = false)
     private String ingredients;
 
+    // Hundredths of a percent, 450 is 4.5%
     @Column(nullable = false)
-    private String alcoholContent;
+    private int alcoholBasisPoints;
 
     @Column(nullable = false)
-    private BigDecimal price;
+    private long priceCents;
 
     @Column(nullable = false)
     private String category;
 
+    // Bumped by every write, bulk updates included, and served as the ETag
+    @Version
+    @Column(nullable = false)
+    private long version;
+
 }
@@ -0,0 +1,111 @@
+package com.beerhouse.adapters.respository;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerField;
+
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+final class BeerEntityMapper {
+
+    private BeerEntityMapper() {
+    }
+
+    static Beer toBeer(BeerEntity beerRecord) {
+        return Beer.builder()
+                .id(beerRecord.getId())
+                .name(beerRecord.getName())
+                .ingredients(beerRecord.getIngredients())
+                .alcoholBasisPoints(beerRecord.getAlcoholBasisPoints())
+                .priceCents(beerRecord.getPriceCents())
+                .category(beerRecord.getCategory())
+                .version(beerRecord.getVersion())
+                .build();
+    }
+
+    static List<Beer> toBeers(List<BeerEntity> beerRecords) {
+        List<Beer> beers = new ArrayList<>(beerRecords.size());
+        for(BeerEntity beerRecord : beerRecords) {
+            beers.add(toBeer(beerRecord));
+        }
+        return beers;
+    }
+
+    /**
+     * The entity attributes holding the fields, the fixed-point ones under
+     * their stored names.
+     */
+    static List<String> attributesOf(Set<BeerField> fields) {
+        List<String> attributes = new ArrayList<>(fields.size());
+        for(BeerField field : fields) {
+            switch (field) {
+                case ALCOHOL_CONTENT:
+                    attributes.add("alcoholBasisPoints");
+                    break;
+                case PRICE:
+                    attributes.add("priceCents");
+                    break;
+                default:
+                    attributes.add(field.getProperty());
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * A beer with only the attributes the tuple holds, found by alias.
+     */
+    static Beer toBeer(Tuple beerAttributes) {
+        Beer.BeerBuilder beer = Beer.builder();
+        for(TupleElement<?> element : beerAttributes.getElements()) {
+            Object value = beerAttributes.get(element);
+            switch (element.getAlias()) {
+                case "id":
+                    beer.id((Integer) value);
+                    break;
+                case "name":
+                    beer.name((String) value);
+                    break;
+                case "ingredients":
+                    beer.ingredients((String) value);
+                    break;
+                case "alcoholBasisPoints":
+                    beer.alcoholBasisPoints((Integer) value);
+                    break;
+                case "priceCents":
+                    beer.priceCents((Long) value);
+                    break;
+                case "category":
+                    beer.category((String) value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unexpected beer attribute " + element.getAlias());
+            }
+        }
+        return beer.build();
+    }
+
+    static List<Beer> toPartialBeers(Collection<Tuple> rows) {
+        List<Beer> beers = new ArrayList<>(rows.size());
+        for(Tuple row : rows) {
+            beers.add(toBeer(row));
+        }
+        return beers;
+    }
+
+    static BeerEntity toEntity(Beer beer) {
+        BeerEntity beerRecord = new BeerEntity();
+        beerRecord.setId(beer.getId());
+        beerRecord.setName(beer.getName());
+        beerRecord.setIngredients(beer.getIngredients());
+        beerRecord.setAlcoholBasisPoints(beer.getAlcoholBasisPoints());
+        beerRecord.setPriceCents(beer.getPriceCents());
+        beerRecord.setCategory(beer.getCategory());
+        // The version stays at zero, Hibernate owns it from the insert on
+        return beerRecord;
+    }
+}
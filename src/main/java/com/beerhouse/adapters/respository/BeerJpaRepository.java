@@ -1,23 +1,66 @@
 package com.beerhouse.adapters.respository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import javax.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 @Transactional
-public interface BeerJpaRepository extends JpaRepository<BeerEntity, Integer> {
+public interface BeerJpaRepository extends JpaRepository<BeerEntity, Integer>, BeerJpaRepositoryCustom {
 
     List<BeerEntity> findAll();
 
+    List<BeerEntity> findByCategory(String category, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select b from BeerEntity b order by b.id")
+    Stream<BeerEntity> streamAll();
+
     Optional<BeerEntity> findById(int id);
 
     BeerEntity save(BeerEntity beer);
 
+    @Modifying(clearAutomatically = true)
+    @Query("update BeerEntity b set b.name = :name, b.ingredients = :ingredients," +
+            " b.alcoholBasisPoints = :alcoholBasisPoints, b.priceCents = :priceCents," +
+            " b.category = :category, b.version = b.version + 1" +
+            " where b.id = :id and (:version < 0 or b.version = :version)")
+    int replaceById(@Param("id") Integer id,
+                    @Param("version") long version,
+                    @Param("name") String name,
+                    @Param("ingredients") String ingredients,
+                    @Param("alcoholBasisPoints") int alcoholBasisPoints,
+                    @Param("priceCents") long priceCents,
+                    @Param("category") String category);
+
     Long deleteById(Integer id);
 
     boolean existsBeerEntityByName(String name);
+
+    @Query("select b.name from BeerEntity b where lower(b.name) like :prefix escape '\\'" +
+            " order by lower(b.name)")
+    List<String> findNamesStartingWith(@Param("prefix") String prefix, Pageable pageable);
+
+    @Query("select b.name, b.id from BeerEntity b where b.name in :names")
+    List<Object[]> findIdsByNameIn(@Param("names") Collection<String> names);
+
+    @Query("select b.id from BeerEntity b where b.id in :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query("delete from BeerEntity b where b.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,22 @@
+package com.beerhouse.adapters.respository;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.Tuple;
+import java.util.Collection;
+import java.util.List;
+
+public interface BeerJpaRepositoryCustom {
+
+    /**
+     * First {@code limit} matching rows in id order. Unlike
+     * findAll(Specification, Pageable) this never runs a count query.
+     */
+    List<BeerEntity> findPage(Specification<BeerEntity> where, int limit);
+
+    /**
+     * The same page, selecting only the given attributes. Each tuple holds
+     * them under their own names as aliases.
+     */
+    List<Tuple> findPageAttributes(Specification<BeerEntity> where, Collection<String> attributes, int limit);
+}
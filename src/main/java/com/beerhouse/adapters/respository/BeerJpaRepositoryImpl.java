@@ -0,0 +1,56 @@
+package com.beerhouse.adapters.respository;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+class BeerJpaRepositoryImpl implements BeerJpaRepositoryCustom {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    public List<BeerEntity> findPage(Specification<BeerEntity> where, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BeerEntity> query = builder.createQuery(BeerEntity.class);
+        Root<BeerEntity> beerRecord = query.from(BeerEntity.class);
+
+        query.select(beerRecord)
+                .where(where.toPredicate(beerRecord, query, builder))
+                .orderBy(builder.asc(beerRecord.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<Tuple> findPageAttributes(Specification<BeerEntity> where, Collection<String> attributes, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<BeerEntity> beerRecord = query.from(BeerEntity.class);
+
+        List<Selection<?>> selections = new ArrayList<>(attributes.size());
+        for(String attribute : attributes) {
+            selections.add(beerRecord.get(attribute).alias(attribute));
+        }
+
+        query.multiselect(selections)
+                .where(where.toPredicate(beerRecord, query, builder))
+                .orderBy(builder.asc(beerRecord.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -1,23 +1,64 @@
 package com.beerhouse.adapters.respository;
 
 import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.model.BeerField;
+import com.beerhouse.domain.model.BeerFilter;
+import com.beerhouse.domain.model.exception.BeerAlreadyExistsException;
 import com.beerhouse.domain.ports.BeerRepositoryPort;
-import org.modelmapper.ModelMapper;
-import org.modelmapper.TypeToken;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static com.beerhouse.adapters.respository.BeerEntityMapper.attributesOf;
+import static com.beerhouse.adapters.respository.BeerEntityMapper.toBeer;
+import static com.beerhouse.adapters.respository.BeerEntityMapper.toBeers;
+import static com.beerhouse.adapters.respository.BeerEntityMapper.toEntity;
+import static com.beerhouse.adapters.respository.BeerEntityMapper.toPartialBeers;
 
 @Service
 public class BeerRepository implements BeerRepositoryPort {
 
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private static final String RESTORE_SQL = "insert into beer "
+            + "(id, name, ingredients, alcohol_basis_points, price_cents, category, version)"
+            + " values (?, ?, ?, ?, ?, ?, ?)";
+
     @Autowired
     BeerJpaRepository beerRepository;
 
-    @Autowired
-    ModelMapper modelMapper;
+    @PersistenceContext
+    EntityManager entityManager;
 
     @Override
     public List<Beer> retrieveMany() {
@@ -26,7 +67,52 @@ public class BeerRepository implements BeerRepositoryPort {
             return null;
         }
 
-        return modelMapper.map(results,new TypeToken<List<Beer>>(){}.getType());
+        return toBeers(results);
+    }
+
+    @Override
+    public List<Beer> retrievePage(BeerFilter filter, int afterId, int limit) {
+        List<BeerEntity> results = beerRepository
+                .findPage(BeerSpecifications.matching(filter, afterId), limit);
+
+        return toBeers(results);
+    }
+
+    /**
+     * Selects only the columns of the fields, which keeps long ones such as
+     * the ingredients out of list pages that do not show them, and skips
+     * building entities.
+     */
+    @Override
+    public List<Beer> retrievePage(BeerFilter filter, int afterId, int limit, Set<BeerField> fields) {
+        List<Tuple> results = beerRepository.findPageAttributes(
+                BeerSpecifications.matching(filter, afterId), attributesOf(fields), limit);
+
+        return toPartialBeers(results);
+    }
+
+    /**
+     * Reads the first rows of the (category, price, id) index instead of
+     * sorting the whole category.
+     */
+    @Override
+    public List<Beer> retrieveByPrice(String category, boolean descending, int limit) {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort byPrice = new Sort(direction, "priceCents").and(new Sort(direction, "id"));
+
+        return toBeers(beerRepository.findByCategory(category, new PageRequest(0, limit, byPrice)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<Beer> action) {
+        try(Stream<BeerEntity> results = beerRepository.streamAll()) {
+            results.forEach(beerRecord -> {
+                action.accept(toBeer(beerRecord));
+                // Keeps the persistence context from growing with the table
+                entityManager.detach(beerRecord);
+            });
+        }
     }
 
     @Override
@@ -35,33 +121,116 @@ public class BeerRepository implements BeerRepositoryPort {
         if(!results.isPresent()){
             return null;
         }
-        return modelMapper.map(results.get(),Beer.class);
+        return toBeer(results.get());
+    }
+
+    @Override
+    public List<Beer> retrieveByIds(Collection<Integer> ids) {
+        if(ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return toBeers(beerRepository.findAll(ids));
+    }
+
+    /**
+     * Fallback for when the search index is switched off: a LIKE scan that
+     * returns matches in id order, without ranking.
+     */
+    @Override
+    public List<Beer> search(String query, int limit) {
+        List<String> words = new ArrayList<>();
+        for(String word : query.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            if(!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        if(words.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return toBeers(beerRepository.findPage(BeerSpecifications.containingAnyWord(words), limit));
     }
 
     @Override
     public Beer create(Beer beer) {
-        BeerEntity beerRecord = modelMapper.map(beer, BeerEntity.class);
-        BeerEntity results = beerRepository.save(beerRecord);
+        BeerEntity beerRecord = toEntity(beer);
+        // A null id makes save() persist instead of merging
+        beerRecord.setId(null);
+        BeerEntity results = saveUnique(beerRecord);
 
-        return modelMapper.map(results,Beer.class);
+        return toBeer(results);
     }
 
+    /**
+     * Overwrites the row with a single conditional UPDATE instead of a merge,
+     * which would SELECT the row first. Returns null when there is no beer
+     * with that id and version. Only an unconditional update has to read
+     * the row back to learn its new version.
+     */
     @Override
     public Beer update(Beer replacementBeer) {
-        BeerEntity replacementRecord = modelMapper.map(replacementBeer,BeerEntity.class);
-
-        BeerEntity results = beerRepository.save(replacementRecord);
+        int updatedRows;
+        try {
+            updatedRows = beerRepository.replaceById(replacementBeer.getId(),
+                    replacementBeer.getVersion(),
+                    replacementBeer.getName(),
+                    replacementBeer.getIngredients(),
+                    replacementBeer.getAlcoholBasisPoints(),
+                    replacementBeer.getPriceCents(),
+                    replacementBeer.getCategory());
+        } catch (DataIntegrityViolationException ex) {
+            if(isUniqueViolation(ex)) {
+                throw new BeerAlreadyExistsException(replacementBeer.getName());
+            }
+            throw ex;
+        }
 
-        return modelMapper.map(results,Beer.class);
+        if(updatedRows == 0) {
+            return null;
+        }
+        if(replacementBeer.getVersion() == Beer.ANY_VERSION) {
+            return retrieveOne(replacementBeer.getId());
+        }
+        return replacementBeer.toBuilder().version(replacementBeer.getVersion() + 1).build();
     }
 
     @Override
-    public Beer alter(Beer replacementBeer) {
-        BeerEntity replacementRecord = modelMapper.map(replacementBeer,BeerEntity.class);
+    @Transactional
+    public Beer alter(int id, Map<String,Object> changes, long expectedVersion) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<BeerEntity> update = builder.createCriteriaUpdate(BeerEntity.class);
+        Root<BeerEntity> beerRecord = update.from(BeerEntity.class);
+
+        // Domain property names match the entity attributes one to one
+        for(Map.Entry<String,Object> change : changes.entrySet()) {
+            update.set(beerRecord.<Object>get(change.getKey()), change.getValue());
+        }
+        Path<Long> version = beerRecord.get("version");
+        update.set(version, builder.sum(version, 1L));
 
-        BeerEntity results = beerRepository.save(replacementRecord);
+        if(expectedVersion == Beer.ANY_VERSION) {
+            update.where(builder.equal(beerRecord.get("id"), id));
+        } else {
+            update.where(builder.equal(beerRecord.get("id"), id), builder.equal(version, expectedVersion));
+        }
+
+        int updatedRows;
+        try {
+            updatedRows = entityManager.createQuery(update).executeUpdate();
+        } catch (PersistenceException ex) {
+            if(isUniqueViolation(ex)) {
+                throw new BeerAlreadyExistsException((String) changes.get("name"));
+            }
+            throw ex;
+        }
+
+        if(updatedRows == 0) {
+            return null;
+        }
 
-        return modelMapper.map(results,Beer.class);
+        // Drops copies of the row loaded earlier in the same request
+        entityManager.clear();
+        return retrieveOne(id);
     }
 
     @Override
@@ -74,4 +243,170 @@ public class BeerRepository implements BeerRepositoryPort {
     public boolean nameExists(String name) {
         return beerRepository.existsBeerEntityByName(name);
     }
+
+    @Override
+    public List<String> suggestNames(String prefix, int limit) {
+        String pattern = BeerSpecifications.escapeLike(prefix.toLowerCase(Locale.ROOT)) + "%";
+
+        return beerRepository.findNamesStartingWith(pattern, new PageRequest(0, limit));
+    }
+
+    @Override
+    public Map<String,Integer> idsByName(Collection<String> names) {
+        Map<String,Integer> idsByName = new HashMap<>();
+        if(names.isEmpty()) {
+            return idsByName;
+        }
+
+        for(Object[] row : beerRepository.findIdsByNameIn(names)) {
+            idsByName.put((String) row[0], (Integer) row[1]);
+        }
+        return idsByName;
+    }
+
+    @Override
+    public Set<Integer> existingIds(Collection<Integer> ids) {
+        if(ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(beerRepository.findExistingIds(ids));
+    }
+
+    /**
+     * Inserts and updates are flushed together so Hibernate can send them as
+     * JDBC batches (see hibernate.jdbc.batch_size), deletes go out as a
+     * single statement.
+     */
+    @Override
+    @Transactional
+    public BeerBatchWrite applyBatch(List<Beer> creates, List<Beer> updates, List<Integer> deletes) {
+        List<BeerEntity> createdRecords = new ArrayList<>(creates.size());
+        List<BeerEntity> updatedRecords = new ArrayList<>(updates.size());
+
+        try {
+            for(Beer beer : creates) {
+                BeerEntity beerRecord = toEntity(beer);
+                beerRecord.setId(null);
+                entityManager.persist(beerRecord);
+                createdRecords.add(beerRecord);
+            }
+
+            if(!updates.isEmpty()) {
+                Map<Integer,Beer> updatesById = new HashMap<>();
+                for(Beer beer : updates) {
+                    updatesById.put(beer.getId(), beer);
+                }
+
+                for(BeerEntity beerRecord : beerRepository.findAll(updatesById.keySet())) {
+                    Beer beer = updatesById.get(beerRecord.getId());
+                    beerRecord.setName(beer.getName());
+                    beerRecord.setIngredients(beer.getIngredients());
+                    beerRecord.setAlcoholBasisPoints(beer.getAlcoholBasisPoints());
+                    beerRecord.setPriceCents(beer.getPriceCents());
+                    beerRecord.setCategory(beer.getCategory());
+                    updatedRecords.add(beerRecord);
+                }
+            }
+
+            // Also bumps the versions of the updated records
+            entityManager.flush();
+
+            if(!deletes.isEmpty()) {
+                beerRepository.deleteByIdIn(deletes);
+            }
+        } catch (PersistenceException | DataIntegrityViolationException ex) {
+            SQLException violation = uniqueViolation(ex);
+            if(violation != null) {
+                throw takenName(violation, creates, updates);
+            }
+            throw ex;
+        }
+
+        return new BeerBatchWrite(toBeers(createdRecords), toBeers(updatedRecords));
+    }
+
+    /**
+     * Inserts the rows with their own ids in one JDBC batch, then restarts
+     * the id sequence so that the next block Hibernate takes from it starts
+     * past them.
+     */
+    @Override
+    @Transactional
+    public void restore(List<Beer> beers) {
+        if(beers.isEmpty()) {
+            return;
+        }
+
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try(PreparedStatement insert = connection.prepareStatement(RESTORE_SQL)) {
+                for(Beer beer : beers) {
+                    insert.setInt(1, beer.getId());
+                    insert.setString(2, beer.getName());
+                    insert.setString(3, beer.getIngredients());
+                    insert.setInt(4, beer.getAlcoholBasisPoints());
+                    insert.setLong(5, beer.getPriceCents());
+                    insert.setString(6, beer.getCategory());
+                    insert.setLong(7, Math.max(beer.getVersion(), 0));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+
+        // The pooled optimizer hands out the block ending at the value it reads
+        int lastId = beers.get(beers.size() - 1).getId();
+        entityManager.createNativeQuery("alter sequence beer_id_seq restart with "
+                + (lastId + BeerEntity.ID_ALLOCATION_SIZE)).executeUpdate();
+    }
+
+    private BeerEntity saveUnique(BeerEntity beerRecord) {
+        try {
+            return beerRepository.save(beerRecord);
+        } catch (DataIntegrityViolationException ex) {
+            if(isUniqueViolation(ex)) {
+                throw new BeerAlreadyExistsException(beerRecord.getName());
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * The name is the only unique column besides the id, so a unique violation
+     * on write always means the name is taken.
+     */
+    static boolean isUniqueViolation(RuntimeException ex) {
+        return uniqueViolation(ex) != null;
+    }
+
+    private static SQLException uniqueViolation(RuntimeException ex) {
+        for(Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if(cause instanceof SQLException
+                    && UNIQUE_VIOLATION.equals(((SQLException) cause).getSQLState())) {
+                return (SQLException) cause;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The batch names the driver reports as the duplicate key, H2 as
+     * {@code VALUES ('name', ...)} and PostgreSQL as {@code (name)=(value)};
+     * when none of them can be picked out, a conflict without a name.
+     */
+    private static BeerAlreadyExistsException takenName(SQLException violation, List<Beer> creates, List<Beer> updates) {
+        String message = String.valueOf(violation.getMessage());
+        Set<String> taken = new LinkedHashSet<>();
+        for(List<Beer> beers : Arrays.asList(creates, updates)) {
+            for(Beer beer : beers) {
+                String name = beer.getName();
+                if(message.contains("'" + name + "'") || message.contains("(" + name + ")")) {
+                    taken.add(name);
+                }
+            }
+        }
+
+        return taken.isEmpty()
+                ? new BeerAlreadyExistsException()
+                : new BeerAlreadyExistsException(String.join(", ", taken));
+    }
 }
@@ -0,0 +1,77 @@
+package com.beerhouse.adapters.respository;
+
+import com.beerhouse.domain.model.BeerFilter;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.domain.Specifications;
+
+import javax.persistence.criteria.Predicate;
+import java.util.ArrayList;
+import java.util.List;
+
+final class BeerSpecifications {
+
+    private BeerSpecifications() {
+    }
+
+    /**
+     * Keyset condition plus one predicate per filter field that is set, so
+     * unset fields add nothing to the WHERE clause.
+     */
+    static Specification<BeerEntity> matching(BeerFilter filter, int afterId) {
+        Specifications<BeerEntity> where = Specifications.where(idGreaterThan(afterId));
+
+        if(filter.getCategory() != null) {
+            where = where.and(categoryIs(filter.getCategory()));
+        }
+        if(filter.getMinPriceCents() != null) {
+            where = where.and(atLeast("priceCents", filter.getMinPriceCents()));
+        }
+        if(filter.getMaxPriceCents() != null) {
+            where = where.and(atMost("priceCents", filter.getMaxPriceCents()));
+        }
+        if(filter.getMinAlcoholBasisPoints() != null) {
+            where = where.and(atLeast("alcoholBasisPoints", filter.getMinAlcoholBasisPoints()));
+        }
+        if(filter.getMaxAlcoholBasisPoints() != null) {
+            where = where.and(atMost("alcoholBasisPoints", filter.getMaxAlcoholBasisPoints()));
+        }
+        return where;
+    }
+
+    static Specification<BeerEntity> containingAnyWord(List<String> words) {
+        return (beerRecord, query, builder) -> {
+            List<Predicate> matches = new ArrayList<>();
+            for(String word : words) {
+                String pattern = "%" + escapeLike(word) + "%";
+                for(String attribute : new String[] {"name", "category", "ingredients"}) {
+                    matches.add(builder.like(builder.lower(beerRecord.<String>get(attribute)), pattern, '\\'));
+                }
+            }
+            return builder.or(matches.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Makes LIKE wildcards in user input match literally, with backslash as
+     * the escape character.
+     */
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    static Specification<BeerEntity> idGreaterThan(int afterId) {
+        return (beerRecord, query, builder) -> builder.greaterThan(beerRecord.<Integer>get("id"), afterId);
+    }
+
+    static Specification<BeerEntity> categoryIs(String category) {
+        return (beerRecord, query, builder) -> builder.equal(beerRecord.get("category"), category);
+    }
+
+    static <T extends Comparable<? super T>> Specification<BeerEntity> atLeast(String attribute, T bound) {
+        return (beerRecord, query, builder) -> builder.greaterThanOrEqualTo(beerRecord.<T>get(attribute), bound);
+    }
+
+    static <T extends Comparable<? super T>> Specification<BeerEntity> atMost(String attribute, T bound) {
+        return (beerRecord, query, builder) -> builder.lessThanOrEqualTo(beerRecord.<T>get(attribute), bound);
+    }
+}
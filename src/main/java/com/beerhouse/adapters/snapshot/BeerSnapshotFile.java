@@ -0,0 +1,197 @@
+package com.beerhouse.adapters.snapshot;
+
+import com.beerhouse.adapters.journal.BeerCodec;
+import com.beerhouse.domain.model.Beer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * The catalog as a file of independently decodable chunks of beers, so that
+ * loading it can be spread over several threads. Layout:
+ *
+ * <pre>
+ * magic, version
+ * chunk*          beers encoded by {@link BeerCodec}, in id order
+ * chunk count
+ * (offset, length, beers, crc32)*
+ * directory offset, magic
+ * </pre>
+ */
+final class BeerSnapshotFile {
+
+    private static final int MAGIC = 0x42454553;
+    // 2 added the beer versions
+    private static final int VERSION = 2;
+    private static final int CHUNK_BYTES = 1 << 18;
+    private static final int TRAILER = Long.BYTES + Integer.BYTES;
+
+    private BeerSnapshotFile() {
+    }
+
+    /**
+     * Writes whatever beers {@code source} hands out to a temporary file and
+     * moves it over {@code file} once it is on disk, so a reader never sees
+     * half a snapshot. Returns the number of beers written.
+     */
+    static long write(Path file, Consumer<Consumer<Beer>> source) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        long beers;
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChunkWriter writer = new ChunkWriter(channel);
+            try {
+                source.accept(writer::add);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            beers = writer.finish();
+            channel.force(true);
+        }
+
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return beers;
+    }
+
+    /**
+     * Maps the file and starts decoding every chunk on the executor. The
+     * futures are in file order, so joining them one after the other yields
+     * the beers in id order.
+     */
+    static List<CompletableFuture<List<Beer>>> read(Path file, Executor executor) throws IOException {
+        MappedByteBuffer mapped;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if(mapped.capacity() < 2 * Integer.BYTES + Integer.BYTES + TRAILER
+                || mapped.getInt(0) != MAGIC || mapped.getInt(mapped.capacity() - Integer.BYTES) != MAGIC) {
+            throw new IOException(file + " is not a beer snapshot");
+        }
+        if(mapped.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException(file + " has unknown snapshot version " + mapped.getInt(Integer.BYTES));
+        }
+
+        ByteBuffer directory = mapped.duplicate();
+        directory.position((int) mapped.getLong(mapped.capacity() - TRAILER));
+        int chunks = directory.getInt();
+
+        List<CompletableFuture<List<Beer>>> decoded = new ArrayList<>(chunks);
+        for(int i = 0; i < chunks; i++) {
+            int offset = (int) directory.getLong();
+            int length = directory.getInt();
+            int beers = directory.getInt();
+            int crc = directory.getInt();
+
+            ByteBuffer chunk = mapped.duplicate();
+            chunk.position(offset);
+            chunk.limit(offset + length);
+            decoded.add(CompletableFuture.supplyAsync(() -> decode(file, chunk.slice(), beers, crc), executor));
+        }
+        return decoded;
+    }
+
+    private static List<Beer> decode(Path file, ByteBuffer chunk, int beers, int expectedCrc) {
+        CRC32 crc = new CRC32();
+        crc.update(chunk.duplicate());
+        if((int) crc.getValue() != expectedCrc) {
+            throw new IllegalStateException(file + " is corrupt");
+        }
+
+        List<Beer> decoded = new ArrayList<>(beers);
+        for(int i = 0; i < beers; i++) {
+            decoded.add(BeerCodec.decode(chunk));
+        }
+        return decoded;
+    }
+
+    /**
+     * Fills a chunk in memory and writes it out once the next beer would not
+     * fit, remembering where each one went for the directory.
+     */
+    private static final class ChunkWriter {
+        private final FileChannel channel;
+        private final ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+        private final DataOutputStream directory = new DataOutputStream(directoryBytes);
+        private ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES);
+        private int chunkBeers;
+        private int chunks;
+        private long position;
+        private long beers;
+
+        ChunkWriter(FileChannel channel) throws IOException {
+            this.channel = channel;
+            writeFully((ByteBuffer) ByteBuffer.allocate(2 * Integer.BYTES).putInt(MAGIC).putInt(VERSION).flip());
+        }
+
+        void add(Beer beer) {
+            int size = BeerCodec.encodedSize(beer);
+            if(size > chunk.remaining()) {
+                try {
+                    flushChunk();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if(size > chunk.capacity()) {
+                    chunk = ByteBuffer.allocate(size);
+                }
+            }
+
+            BeerCodec.encode(beer, chunk);
+            chunkBeers++;
+            beers++;
+        }
+
+        long finish() throws IOException {
+            flushChunk();
+
+            long directoryOffset = position;
+            writeFully((ByteBuffer) ByteBuffer.allocate(Integer.BYTES).putInt(chunks).flip());
+            writeFully(ByteBuffer.wrap(directoryBytes.toByteArray()));
+            writeFully((ByteBuffer) ByteBuffer.allocate(TRAILER).putLong(directoryOffset).putInt(MAGIC).flip());
+            return beers;
+        }
+
+        private void flushChunk() throws IOException {
+            if(chunkBeers == 0) {
+                return;
+            }
+
+            chunk.flip();
+            CRC32 crc = new CRC32();
+            crc.update(chunk.duplicate());
+            directory.writeLong(position);
+            directory.writeInt(chunk.remaining());
+            directory.writeInt(chunkBeers);
+            directory.writeInt((int) crc.getValue());
+            writeFully(chunk);
+
+            chunks++;
+            chunkBeers = 0;
+            chunk = chunk.capacity() == CHUNK_BYTES ? (ByteBuffer) chunk.clear() : ByteBuffer.allocate(CHUNK_BYTES);
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while(buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+    }
+}
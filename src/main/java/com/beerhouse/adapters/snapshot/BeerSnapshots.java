@@ -0,0 +1,93 @@
+package com.beerhouse.adapters.snapshot;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerFilter;
+import com.beerhouse.domain.ports.BeerPersistencePort;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Saves the catalog to a {@link BeerSnapshotFile} on shutdown, or whenever
+ * asked to over JMX, and loads it back on startup when the catalog is
+ * empty. Loading happens while the context is being built, before the
+ * server accepts requests; chunks are decoded in parallel and restored in
+ * order as they become ready, through the service, so the statistics,
+ * indexes and the read cache are warm once startup is over.
+ */
+@Component
+@ConditionalOnProperty(name = "beerhouse.snapshot.enabled", havingValue = "true")
+@ManagedResource(objectName = "com.beerhouse:type=Snapshot,name=beers")
+public class BeerSnapshots {
+
+    @Autowired
+    BeerPersistencePort beerService;
+
+    @Value("${beerhouse.snapshot.file:data/beers.snapshot}")
+    String file;
+
+    @Value("${beerhouse.snapshot.load-threads:4}")
+    int loadThreads;
+
+    private volatile long loadedBeers;
+    private volatile long savedBeers;
+
+    @PostConstruct
+    public void load() throws IOException {
+        Path path = Paths.get(file);
+        if(!Files.exists(path)
+                || !beerService.retrievePage(BeerFilter.builder().build(), null, 1).getItems().isEmpty()) {
+            return;
+        }
+
+        ExecutorService decoders = Executors.newFixedThreadPool(loadThreads);
+        try {
+            long restored = 0;
+            for(CompletableFuture<List<Beer>> chunk : BeerSnapshotFile.read(path, decoders)) {
+                List<Beer> beers = chunk.join();
+                beerService.restore(beers);
+                restored += beers.size();
+            }
+            loadedBeers = restored;
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Could not load " + file + ", remove it to start empty", e.getCause());
+        } finally {
+            decoders.shutdownNow();
+        }
+    }
+
+    @PreDestroy
+    @ManagedOperation(description = "Writes the whole catalog to the snapshot file")
+    public void save() throws IOException {
+        Path path = Paths.get(file).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        savedBeers = BeerSnapshotFile.write(path, beerService::export);
+    }
+
+    @ManagedAttribute(description = "Beers loaded from the snapshot at startup")
+    public long getLoadedBeers() {
+        return loadedBeers;
+    }
+
+    @ManagedAttribute(description = "Beers written by the last save")
+    public long getSavedBeers() {
+        return savedBeers;
+    }
+}
@@ -1,21 +0,0 @@
-package com.beerhouse.application.config;
-
-import org.modelmapper.ModelMapper;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-import static org.modelmapper.config.Configuration.AccessLevel.PRIVATE;
-
-@Configuration
-public class BeanConfig {
-
-    @Bean
-    public ModelMapper modelMapper() {
-        ModelMapper modelMapper =  new ModelMapper();
-        modelMapper.getConfiguration()
-                .setFieldAccessLevel(PRIVATE);
-
-        return modelMapper;
-    }
-
-}
@@ -0,0 +1,130 @@
+package com.beerhouse.application.config;
+
+import com.beerhouse.adapters.cache.CachingBeerRepository;
+import com.beerhouse.adapters.cache.CoalescingBeerRepository;
+import com.beerhouse.adapters.index.NameIndexingBeerRepository;
+import com.beerhouse.adapters.journal.FsyncPolicy;
+import com.beerhouse.adapters.journal.JournalingBeerRepository;
+import com.beerhouse.adapters.index.TextIndexingBeerRepository;
+import com.beerhouse.adapters.memory.ColumnarBeerRepository;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+@Configuration
+public class RepositoryConfig {
+
+    @Value("${beerhouse.store:jpa}")
+    private String store;
+
+    @Value("${beerhouse.columnar.initial-capacity:1024}")
+    private int columnarInitialCapacity;
+
+    @Value("${beerhouse.journal.directory:data/journal}")
+    private String journalDirectory;
+
+    @Value("${beerhouse.journal.fsync:group}")
+    private String journalFsync;
+
+    @Value("${beerhouse.journal.flush-interval-millis:2}")
+    private long journalFlushIntervalMillis;
+
+    @Value("${beerhouse.journal.snapshot-threshold-bytes:67108864}")
+    private long journalSnapshotThresholdBytes;
+
+    @Value("${beerhouse.name-index.enabled:true}")
+    private boolean nameIndexEnabled;
+
+    @Value("${beerhouse.name-index.expected-names:100000}")
+    private int nameIndexExpectedNames;
+
+    @Value("${beerhouse.search-index.enabled:true}")
+    private boolean searchIndexEnabled;
+
+    @Value("${beerhouse.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${beerhouse.cache.enabled:false}")
+    private boolean cacheEnabled;
+
+    @Value("${beerhouse.cache.maximum-size:10000}")
+    private int cacheMaximumSize;
+
+    @Value("${beerhouse.cache.time-to-live-seconds:300}")
+    private long cacheTimeToLiveSeconds;
+
+    /**
+     * The columnar store made durable by a journal, replayed here at
+     * startup. A bean of its own so that the journal is closed on shutdown.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "beerhouse.store", havingValue = "journal")
+    public JournalingBeerRepository journalingBeerRepository() throws IOException {
+        JournalingBeerRepository journalingRepository = new JournalingBeerRepository(
+                new ColumnarBeerRepository(columnarInitialCapacity),
+                Paths.get(journalDirectory),
+                FsyncPolicy.valueOf(journalFsync.toUpperCase(Locale.ROOT)),
+                journalFlushIntervalMillis,
+                journalSnapshotThresholdBytes);
+        journalingRepository.open();
+        return journalingRepository;
+    }
+
+    /**
+     * The port the domain talks to: the configured store, JPA, the in-memory
+     * columnar one or its journaled variant, wrapped by whichever decorators
+     * are switched on.
+     */
+    @Bean
+    @Primary
+    public BeerRepositoryPort beerRepositoryPort(@Qualifier("beerRepository") BeerRepositoryPort beerRepository,
+                                                 ObjectProvider<JournalingBeerRepository> journalingRepository) {
+        BeerRepositoryPort port;
+        switch (store) {
+            case "jpa":
+                port = beerRepository;
+                break;
+            case "columnar":
+                port = new ColumnarBeerRepository(columnarInitialCapacity);
+                break;
+            case "journal":
+                port = journalingRepository.getObject();
+                break;
+            default:
+                throw new IllegalStateException("Unknown beerhouse.store " + store
+                        + ", expected jpa, columnar or journal");
+        }
+
+        if(nameIndexEnabled) {
+            NameIndexingBeerRepository nameIndexingRepository =
+                    new NameIndexingBeerRepository(port, nameIndexExpectedNames);
+            nameIndexingRepository.seed();
+            port = nameIndexingRepository;
+        }
+
+        if(searchIndexEnabled) {
+            TextIndexingBeerRepository textIndexingRepository = new TextIndexingBeerRepository(port);
+            textIndexingRepository.seed();
+            port = textIndexingRepository;
+        }
+
+        if(coalescingEnabled) {
+            port = new CoalescingBeerRepository(port);
+        }
+
+        if(cacheEnabled) {
+            port = new CachingBeerRepository(port, cacheMaximumSize, cacheTimeToLiveSeconds);
+        }
+
+        return port;
+    }
+}
@@ -1,24 +1,78 @@
 package com.beerhouse.domain.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import java.math.BigDecimal;
 
+/**
+ * Price and alcohol content are held as fixed-point integers (see
+ * {@link BeerUnits}); {@link #getPrice()} and {@link #getAlcoholContent()}
+ * give them back in the decimal and "4.5%" forms the API uses.
+ *
+ * The version counts the writes to a stored beer and is its ETag. On a beer
+ * handed to an update it is the version the caller last saw, or
+ * {@link #ANY_VERSION} to overwrite whatever is stored.
+ */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 public class Beer {
+    public static final int ALCOHOL_CONTENT_UNSET = -1;
+    public static final long ANY_VERSION = -1;
+
     private int id;
     private String name;
     private String ingredients;
-    private String alcoholContent;
-    private BigDecimal price;
+
+    @JsonIgnore
+    @Builder.Default
+    private int alcoholBasisPoints = ALCOHOL_CONTENT_UNSET;
+
+    // Zero until a price is set, real prices are always positive
+    @JsonIgnore
+    private long priceCents;
+
     private String category;
 
+    @JsonIgnore
+    @Builder.Default
+    private long version = ANY_VERSION;
+
+    public String getAlcoholContent() {
+        if(alcoholBasisPoints == ALCOHOL_CONTENT_UNSET) {
+            return null;
+        }
+        return BeerUnits.formatAlcoholContent(alcoholBasisPoints);
+    }
+
+    public void setAlcoholContent(String alcoholContent) {
+        this.alcoholBasisPoints = alcoholContent == null
+                ? ALCOHOL_CONTENT_UNSET : BeerUnits.parseAlcoholContent(alcoholContent);
+    }
+
+    public BigDecimal getPrice() {
+        if(priceCents == 0) {
+            return null;
+        }
+        return BeerUnits.fromCents(priceCents);
+    }
+
     public void setPrice(BigDecimal price) {
         if(price.compareTo(BigDecimal.ZERO) == 1) {
-            this.price = price;
+            this.priceCents = BeerUnits.toCents(price);
         } else
             throw new IllegalArgumentException("Price must be greater than zero");
     }
-}
\ No newline at end of file
+
+    public static class BeerBuilder {
+        public BeerBuilder alcoholContent(String alcoholContent) {
+            return alcoholBasisPoints(alcoholContent == null
+                    ? ALCOHOL_CONTENT_UNSET : BeerUnits.parseAlcoholContent(alcoholContent));
+        }
+
+        public BeerBuilder price(BigDecimal price) {
+            return priceCents(price == null ? 0 : BeerUnits.toCents(price));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.beerhouse.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One entry of a batch write. {@code violation} is set when the entry was
+ * already found invalid while being read, it is then reported as is.
+ */
+@Data
+@AllArgsConstructor
+public class BeerBatchOperation {
+
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+
+    private Type type;
+    private Integer id;
+    private Beer beer;
+    private String violation;
+}
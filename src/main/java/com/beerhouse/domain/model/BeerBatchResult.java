@@ -0,0 +1,19 @@
+package com.beerhouse.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BeerBatchResult {
+
+    public enum Outcome {
+        CREATED, UPDATED, DELETED, INVALID, NOT_FOUND, NAME_TAKEN
+    }
+
+    private int index;
+    private BeerBatchOperation.Type type;
+    private Integer id;
+    private Outcome outcome;
+    private String message;
+}
@@ -0,0 +1,18 @@
+package com.beerhouse.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * What a batch wrote: the created beers with their ids, in the order they
+ * were given, and the updated beers as stored, with their new versions.
+ * Updates of beers that do not exist are left out.
+ */
+@Data
+@AllArgsConstructor
+public class BeerBatchWrite {
+    private List<Beer> created;
+    private List<Beer> updated;
+}
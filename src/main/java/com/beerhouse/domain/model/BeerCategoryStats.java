@@ -0,0 +1,16 @@
+package com.beerhouse.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class BeerCategoryStats {
+    private String category;
+    private long count;
+    private BigDecimal minPrice;
+    private BigDecimal avgPrice;
+    private BigDecimal maxPrice;
+}
@@ -0,0 +1,21 @@
+package com.beerhouse.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * What changed after a sequence number: the current state of every beer
+ * created or written since, and the ids of those deleted since. Passing
+ * {@code sequence} back as the next {@code since} continues from here;
+ * {@code more} says there are further changes past it already.
+ */
+@Data
+@AllArgsConstructor
+public class BeerChanges {
+    private List<Beer> items;
+    private List<Integer> deletedIds;
+    private long sequence;
+    private boolean more;
+}
@@ -0,0 +1,41 @@
+package com.beerhouse.domain.model;
+
+import java.util.function.Function;
+
+/**
+ * The beer properties a listing can be narrowed down to, by their names in
+ * the API.
+ */
+public enum BeerField {
+    ID("id", Beer::getId),
+    NAME("name", Beer::getName),
+    INGREDIENTS("ingredients", Beer::getIngredients),
+    ALCOHOL_CONTENT("alcoholContent", Beer::getAlcoholContent),
+    PRICE("price", Beer::getPrice),
+    CATEGORY("category", Beer::getCategory);
+
+    private final String property;
+    private final Function<Beer,Object> getter;
+
+    BeerField(String property, Function<Beer,Object> getter) {
+        this.property = property;
+        this.getter = getter;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Object valueOf(Beer beer) {
+        return getter.apply(beer);
+    }
+
+    public static BeerField fromProperty(String property) {
+        for(BeerField field : values()) {
+            if(field.property.equals(property)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Beers have no field " + property);
+    }
+}
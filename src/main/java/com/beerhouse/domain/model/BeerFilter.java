@@ -0,0 +1,18 @@
+package com.beerhouse.domain.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Conditions a listed beer has to meet. Unset fields do not filter and all
+ * bounds are inclusive; bounds use the units of {@link BeerUnits}.
+ */
+@Data
+@Builder
+public class BeerFilter {
+    private String category;
+    private Long minPriceCents;
+    private Long maxPriceCents;
+    private Integer minAlcoholBasisPoints;
+    private Integer maxAlcoholBasisPoints;
+}
@@ -0,0 +1,17 @@
+package com.beerhouse.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The beers asked for by id, in the order they were asked for, and the ids
+ * that have no beer.
+ */
+@Data
+@AllArgsConstructor
+public class BeerLookup {
+    private List<Beer> items;
+    private List<Integer> missingIds;
+}
@@ -0,0 +1,13 @@
+package com.beerhouse.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BeerPage {
+    private List<Beer> items;
+    private String nextCursor;
+}
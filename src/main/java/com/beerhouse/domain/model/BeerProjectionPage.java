@@ -0,0 +1,18 @@
+package com.beerhouse.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link BeerPage} narrowed down to some fields: every item holds only
+ * those, in the order they were asked for.
+ */
+@Data
+@AllArgsConstructor
+public class BeerProjectionPage {
+    private List<Map<String,Object>> items;
+    private String nextCursor;
+}
@@ -0,0 +1,68 @@
+package com.beerhouse.domain.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between the decimal values of the API and the fixed-point
+ * integers beers are stored and compared as: prices in cents and alcohol
+ * content in hundredths of a percent (basis points).
+ */
+public final class BeerUnits {
+
+    private static final int PRICE_SCALE = 2;
+    private static final int ALCOHOL_SCALE = 2;
+    private static final int MAX_ALCOHOL_BASIS_POINTS = 100_00;
+
+    private BeerUnits() {
+    }
+
+    public static long toCents(BigDecimal amount) {
+        try {
+            return amount.setScale(PRICE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Price " + amount + " can't be represented in cents");
+        }
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, PRICE_SCALE);
+    }
+
+    public static int toBasisPoints(BigDecimal percent) {
+        int basisPoints;
+        try {
+            basisPoints = percent.setScale(ALCOHOL_SCALE, RoundingMode.UNNECESSARY).unscaledValue().intValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Alcohol content " + percent + "% has too many decimals");
+        }
+        if(basisPoints < 0 || basisPoints > MAX_ALCOHOL_BASIS_POINTS) {
+            throw new IllegalArgumentException("Alcohol content must be between 0% and 100%");
+        }
+        return basisPoints;
+    }
+
+    /**
+     * Reads "4.5%", "4.5 %" or "4.5".
+     */
+    public static int parseAlcoholContent(String alcoholContent) {
+        String percent = alcoholContent.trim();
+        if(percent.endsWith("%")) {
+            percent = percent.substring(0, percent.length() - 1).trim();
+        }
+
+        try {
+            return toBasisPoints(new BigDecimal(percent));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Alcohol content must be a percentage such as 4.5%, not " + alcoholContent);
+        }
+    }
+
+    /**
+     * Writes no trailing zeros, so 450 is "4.5%" and 500 is "5%".
+     */
+    public static String formatAlcoholContent(int basisPoints) {
+        BigDecimal percent = BigDecimal.valueOf(basisPoints, ALCOHOL_SCALE).stripTrailingZeros();
+        return percent.toPlainString() + "%";
+    }
+}
@@ -4,4 +4,11 @@ public class BeerAlreadyExistsException extends RuntimeException {
     public BeerAlreadyExistsException(String name) {
         super("Beer with name " + name + " already exists");
     }
+
+    /**
+     * For a batch where the store only tells that one of its names is taken.
+     */
+    public BeerAlreadyExistsException() {
+        super("A beer with one of the names in the batch already exists");
+    }
 }
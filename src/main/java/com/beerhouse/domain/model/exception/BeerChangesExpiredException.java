@@ -0,0 +1,7 @@
+package com.beerhouse.domain.model.exception;
+
+public class BeerChangesExpiredException extends RuntimeException {
+    public BeerChangesExpiredException(long since) {
+        super("Changes since " + since + " are no longer known, retrieve the whole catalog again");
+    }
+}
@@ -0,0 +1,7 @@
+package com.beerhouse.domain.model.exception;
+
+public class BeerVersionMismatchException extends RuntimeException {
+    public BeerVersionMismatchException(Integer id) {
+        super("Beer with id " + id + " was changed since it was read");
+    }
+}
@@ -0,0 +1,26 @@
+package com.beerhouse.domain.ports;
+
+import com.beerhouse.domain.model.Beer;
+
+import java.util.List;
+
+/**
+ * Told by the service about every write once it has succeeded, on the
+ * writing thread. Implementations should hand off anything slow.
+ */
+public interface BeerChangeListener {
+
+    /**
+     * The beer was created, replaced or altered; this is its new state.
+     */
+    void beerSaved(Beer beer);
+
+    void beerDeleted(int id);
+
+    /**
+     * The beers were loaded back from a copy of the catalog, usually at
+     * startup. They are not changes clients could have seen, so they are
+     * not in the change log either.
+     */
+    void beersRestored(List<Beer> beers);
+}
@@ -1,18 +1,68 @@
 package com.beerhouse.domain.ports;
 
 import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchOperation;
+import com.beerhouse.domain.model.BeerBatchResult;
+import com.beerhouse.domain.model.BeerCategoryStats;
+import com.beerhouse.domain.model.BeerChanges;
+import com.beerhouse.domain.model.BeerFilter;
+import com.beerhouse.domain.model.BeerLookup;
+import com.beerhouse.domain.model.BeerPage;
+import com.beerhouse.domain.model.BeerProjectionPage;
 
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BeerPersistencePort {
 
     List<Beer> retrieveMany();
 
+    BeerPage retrievePage(BeerFilter filter, String after, int limit);
+
+    /**
+     * The same page with only the named fields of every beer, such as
+     * "id", "name" and "price".
+     */
+    BeerProjectionPage retrievePage(BeerFilter filter, String after, int limit, List<String> fields);
+
+    List<Beer> retrieveByPrice(String category, String sort, int limit);
+
+    List<Beer> search(String query, int limit);
+
+    List<String> suggest(String prefix, int limit);
+
+    List<BeerCategoryStats> retrieveStats();
+
+    /**
+     * Beers written and deleted after the {@code since} sequence number,
+     * or only the current sequence number when it is null.
+     */
+    BeerChanges retrieveChanges(Long since, int limit);
+
+    void export(Consumer<Beer> action);
+
     Beer retrieveOne(int id);
 
+    /**
+     * Up to a page worth of beers by id, looked up together; repeated ids
+     * count once.
+     */
+    BeerLookup retrieveByIds(List<Integer> ids);
+
     Beer create(Beer beer);
     Beer update(int id,Beer beer);
     Beer alter(int id, LinkedHashMap<String,Object> fields);
+
+    /**
+     * Like {@link #alter(int, LinkedHashMap)}, but only if the beer is still
+     * at the expected version, or whatever version with
+     * {@link Beer#ANY_VERSION}.
+     */
+    Beer alter(int id, LinkedHashMap<String,Object> fields, long expectedVersion);
     Long delete(int id);
+
+    List<BeerBatchResult> applyBatch(List<BeerBatchOperation> operations);
+
+    void restore(List<Beer> beers);
 }
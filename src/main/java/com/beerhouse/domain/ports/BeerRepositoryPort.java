@@ -1,21 +1,89 @@
 package com.beerhouse.domain.ports;
 
 import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.model.BeerField;
+import com.beerhouse.domain.model.BeerFilter;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface BeerRepositoryPort {
     List<Beer> retrieveMany();
 
+    List<Beer> retrievePage(BeerFilter filter, int afterId, int limit);
+
+    /**
+     * The same page, but only the id and the given fields need to be read;
+     * the other properties of the beers returned are left unset.
+     */
+    List<Beer> retrievePage(BeerFilter filter, int afterId, int limit, Set<BeerField> fields);
+
+    /**
+     * The {@code limit} cheapest beers of the category, or the most
+     * expensive ones when {@code descending}.
+     */
+    List<Beer> retrieveByPrice(String category, boolean descending, int limit);
+
+    void forEach(Consumer<Beer> action);
+
     Beer retrieveOne(int id);
 
+    /**
+     * Beers with the given ids, in no particular order; ids without a beer
+     * are left out.
+     */
+    List<Beer> retrieveByIds(Collection<Integer> ids);
+
+    /**
+     * At most {@code limit} beers whose name, category or ingredients hold
+     * any word of the query, best matches first.
+     */
+    List<Beer> search(String query, int limit);
+
     Beer create(Beer beer);
 
+    /**
+     * Replaces the beer with the same id, provided it is still at the
+     * version the given beer carries (any version with
+     * {@link Beer#ANY_VERSION}). Returns it with its new version, or null
+     * when there is no such beer at that version.
+     */
     Beer update(Beer beer);
 
-    Beer alter(Beer beer);
+    /**
+     * Writes only the given columns, with the same version condition and
+     * result as {@link #update}.
+     */
+    Beer alter(int id, Map<String,Object> changes, long expectedVersion);
 
     Long delete(int id);
 
     boolean nameExists(String name);
+
+    /**
+     * At most {@code limit} beer names starting with the prefix, ignoring
+     * case, in alphabetical order.
+     */
+    List<String> suggestNames(String prefix, int limit);
+
+    Map<String,Integer> idsByName(Collection<String> names);
+
+    Set<Integer> existingIds(Collection<Integer> ids);
+
+    /**
+     * Writes all changes in one transaction and returns the beers it
+     * created and updated, as stored.
+     */
+    BeerBatchWrite applyBatch(List<Beer> creates, List<Beer> updates, List<Integer> deletes);
+
+    /**
+     * Stores beers under the ids they already have, for an empty catalog
+     * being reloaded from a copy. Successive calls come in increasing id
+     * order and new beers get ids above every restored one.
+     */
+    void restore(List<Beer> beers);
 }
@@ -0,0 +1,115 @@
+package com.beerhouse.domain.ports;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.model.BeerField;
+import com.beerhouse.domain.model.BeerFilter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Base class for {@link BeerRepositoryPort} decorators. Every call goes to the
+ * wrapped port unless a subclass overrides it.
+ */
+public abstract class ForwardingBeerRepositoryPort implements BeerRepositoryPort {
+
+    protected final BeerRepositoryPort delegate;
+
+    protected ForwardingBeerRepositoryPort(BeerRepositoryPort delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Beer> retrieveMany() {
+        return delegate.retrieveMany();
+    }
+
+    @Override
+    public List<Beer> retrievePage(BeerFilter filter, int afterId, int limit) {
+        return delegate.retrievePage(filter, afterId, limit);
+    }
+
+    @Override
+    public List<Beer> retrievePage(BeerFilter filter, int afterId, int limit, Set<BeerField> fields) {
+        return delegate.retrievePage(filter, afterId, limit, fields);
+    }
+
+    @Override
+    public List<Beer> retrieveByPrice(String category, boolean descending, int limit) {
+        return delegate.retrieveByPrice(category, descending, limit);
+    }
+
+    @Override
+    public void forEach(Consumer<Beer> action) {
+        delegate.forEach(action);
+    }
+
+    @Override
+    public Beer retrieveOne(int id) {
+        return delegate.retrieveOne(id);
+    }
+
+    @Override
+    public List<Beer> retrieveByIds(Collection<Integer> ids) {
+        return delegate.retrieveByIds(ids);
+    }
+
+    @Override
+    public List<Beer> search(String query, int limit) {
+        return delegate.search(query, limit);
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        return delegate.create(beer);
+    }
+
+    @Override
+    public Beer update(Beer beer) {
+        return delegate.update(beer);
+    }
+
+    @Override
+    public Beer alter(int id, Map<String,Object> changes, long expectedVersion) {
+        return delegate.alter(id, changes, expectedVersion);
+    }
+
+    @Override
+    public Long delete(int id) {
+        return delegate.delete(id);
+    }
+
+    @Override
+    public boolean nameExists(String name) {
+        return delegate.nameExists(name);
+    }
+
+    @Override
+    public List<String> suggestNames(String prefix, int limit) {
+        return delegate.suggestNames(prefix, limit);
+    }
+
+    @Override
+    public Map<String,Integer> idsByName(Collection<String> names) {
+        return delegate.idsByName(names);
+    }
+
+    @Override
+    public Set<Integer> existingIds(Collection<Integer> ids) {
+        return delegate.existingIds(ids);
+    }
+
+    @Override
+    public BeerBatchWrite applyBatch(List<Beer> creates, List<Beer> updates, List<Integer> deletes) {
+        return delegate.applyBatch(creates, updates, deletes);
+    }
+
+    @Override
+    public void restore(List<Beer> beers) {
+        delegate.restore(beers);
+    }
+}
@@ -0,0 +1,86 @@
+package com.beerhouse.domain.services;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The latest change sequence number of every beer written since startup,
+ * kept up to date by {@link BeerService} like the statistics. Only ids are
+ * kept, one entry per beer however often it changes, and the state is read
+ * back from the repository when the changes are asked for; a beer that is
+ * gone by then was deleted.
+ *
+ * Sequence numbers start at the startup time in microseconds, so they keep
+ * increasing across restarts without being stored. Changes from before
+ * startup, or from entries dropped to stay within {@code retained}, are
+ * unknown; asking for them means the caller has to start over.
+ */
+@Component
+public class BeerChangeLog {
+
+    @Value("${beerhouse.changes.retained:100000}")
+    int retained;
+
+    private final TreeMap<Long, Integer> idsBySequence = new TreeMap<>();
+    private final Map<Integer, Long> sequencesById = new HashMap<>();
+
+    private long lastSequence = System.currentTimeMillis() * 1000;
+    // Changes at or below it may have been forgotten
+    private long floor = lastSequence;
+
+    synchronized void record(int id) {
+        long sequence = ++lastSequence;
+        Long previous = sequencesById.put(id, sequence);
+        if(previous != null) {
+            idsBySequence.remove(previous);
+        }
+        idsBySequence.put(sequence, id);
+
+        if(idsBySequence.size() > retained) {
+            Map.Entry<Long, Integer> oldest = idsBySequence.pollFirstEntry();
+            sequencesById.remove(oldest.getValue());
+            floor = oldest.getKey();
+        }
+    }
+
+    /**
+     * Ids of at most {@code limit} beers changed after {@code since}, in
+     * the order of their latest change. Without {@code since} there are no
+     * ids, only the latest sequence number; a copy of the catalog read after
+     * taking it holds every change up to it.
+     */
+    synchronized Slice since(Long since, int limit) {
+        if(since == null) {
+            return new Slice(new ArrayList<>(), lastSequence, false);
+        }
+        if(since < floor || since > lastSequence) {
+            return null;
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        long sequence = since;
+        for(Map.Entry<Long, Integer> change : idsBySequence.tailMap(since, false).entrySet()) {
+            if(ids.size() == limit) {
+                return new Slice(ids, sequence, true);
+            }
+            ids.add(change.getValue());
+            sequence = change.getKey();
+        }
+        // Nothing else changed up to the last sequence number
+        return new Slice(ids, lastSequence, false);
+    }
+
+    @Data
+    static final class Slice {
+        private final List<Integer> ids;
+        private final long sequence;
+        private final boolean more;
+    }
+}
@@ -1,26 +1,67 @@
 package com.beerhouse.domain.services;
 
 import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchOperation;
+import com.beerhouse.domain.model.BeerBatchOperation.Type;
+import com.beerhouse.domain.model.BeerBatchResult;
+import com.beerhouse.domain.model.BeerBatchResult.Outcome;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.model.BeerCategoryStats;
+import com.beerhouse.domain.model.BeerChanges;
+import com.beerhouse.domain.model.BeerField;
+import com.beerhouse.domain.model.BeerFilter;
+import com.beerhouse.domain.model.BeerLookup;
+import com.beerhouse.domain.model.BeerPage;
+import com.beerhouse.domain.model.BeerProjectionPage;
+import com.beerhouse.domain.model.BeerUnits;
 import com.beerhouse.domain.model.exception.BeerAlreadyExistsException;
+import com.beerhouse.domain.model.exception.BeerChangesExpiredException;
 import com.beerhouse.domain.model.exception.BeerNotFoundException;
+import com.beerhouse.domain.model.exception.BeerVersionMismatchException;
 import com.beerhouse.domain.model.exception.NoBeersFoundException;
+import com.beerhouse.domain.ports.BeerChangeListener;
 import com.beerhouse.domain.ports.BeerPersistencePort;
 import com.beerhouse.domain.ports.BeerRepositoryPort;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class BeerService implements BeerPersistencePort {
 
+    static final int MAX_PAGE_SIZE = 1000;
+
+    static final int MAX_BATCH_SIZE = 10000;
+
+    @Value("${beerhouse.write.conditional-updates:true}")
+    boolean conditionalUpdates;
+
     @Autowired
     BeerRepositoryPort beerRepository;
 
     @Autowired
-    ModelMapper modelMapper;
+    BeerStatistics statistics;
+
+    @Autowired
+    BeerChangeLog changeLog;
+
+    @Autowired(required = false)
+    List<BeerChangeListener> changeListeners = new ArrayList<>();
 
     @Override
     public List<Beer> retrieveMany() {
@@ -33,6 +74,160 @@ public class BeerService implements BeerPersistencePort {
         return results;
     }
 
+    @Override
+    public BeerPage retrievePage(BeerFilter filter, String after, int limit) {
+        int afterId = startOfPage(filter, after, limit);
+
+        // One extra row tells us whether there is a next page without a count query
+        List<Beer> results = beerRepository.retrievePage(filter, afterId, limit + 1);
+
+        if(results.size() <= limit) {
+            return new BeerPage(results, null);
+        }
+
+        List<Beer> items = results.subList(0, limit);
+        String nextCursor = encodeCursor(items.get(limit - 1).getId());
+
+        return new BeerPage(items, nextCursor);
+    }
+
+    /**
+     * Only the id, for the cursor, and the requested fields are read from
+     * the repository.
+     */
+    @Override
+    public BeerProjectionPage retrievePage(BeerFilter filter, String after, int limit, List<String> fields) {
+        int afterId = startOfPage(filter, after, limit);
+
+        if(fields == null || fields.isEmpty()) {
+            throw new IllegalArgumentException("At least one field is required");
+        }
+        Set<BeerField> selected = new LinkedHashSet<>();
+        for(String field : fields) {
+            selected.add(BeerField.fromProperty(field == null ? null : field.trim()));
+        }
+        Set<BeerField> read = EnumSet.copyOf(selected);
+        read.add(BeerField.ID);
+
+        List<Beer> results = beerRepository.retrievePage(filter, afterId, limit + 1, read);
+
+        List<Beer> beers = results.size() <= limit ? results : results.subList(0, limit);
+        List<Map<String,Object>> items = new ArrayList<>(beers.size());
+        for(Beer beer : beers) {
+            Map<String,Object> item = new LinkedHashMap<>();
+            for(BeerField field : selected) {
+                item.put(field.getProperty(), field.valueOf(beer));
+            }
+            items.add(item);
+        }
+
+        String nextCursor = results.size() <= limit ? null : encodeCursor(beers.get(limit - 1).getId());
+
+        return new BeerProjectionPage(items, nextCursor);
+    }
+
+    private static int startOfPage(BeerFilter filter, String after, int limit) {
+        checkLimit(limit);
+        checkRange("price", filter.getMinPriceCents(), filter.getMaxPriceCents());
+        checkRange("alcohol", filter.getMinAlcoholBasisPoints(), filter.getMaxAlcoholBasisPoints());
+
+        return after == null ? 0 : decodeCursor(after);
+    }
+
+    /**
+     * {@code sort} is "price" for the cheapest beers first and "-price" for
+     * the most expensive first.
+     */
+    @Override
+    public List<Beer> retrieveByPrice(String category, String sort, int limit) {
+        checkLimit(limit);
+
+        switch (sort) {
+            case "price":
+                return beerRepository.retrieveByPrice(category, false, limit);
+            case "-price":
+                return beerRepository.retrieveByPrice(category, true, limit);
+            default:
+                throw new IllegalArgumentException("Beers can only be sorted by price or -price, not " + sort);
+        }
+    }
+
+    @Override
+    public List<Beer> search(String query, int limit) {
+        if(query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("A search query is required");
+        }
+        checkLimit(limit);
+
+        return beerRepository.search(query, limit);
+    }
+
+    @Override
+    public List<String> suggest(String prefix, int limit) {
+        if(prefix == null || prefix.isEmpty()) {
+            throw new IllegalArgumentException("A prefix is required");
+        }
+        checkLimit(limit);
+
+        return beerRepository.suggestNames(prefix, limit);
+    }
+
+    @Override
+    public List<BeerCategoryStats> retrieveStats() {
+        return statistics.snapshot();
+    }
+
+    /**
+     * One lookup by id for the whole page of changes; ids the repository no
+     * longer has are the tombstones.
+     */
+    @Override
+    public BeerChanges retrieveChanges(Long since, int limit) {
+        checkLimit(limit);
+
+        BeerChangeLog.Slice slice = changeLog.since(since, limit);
+        if(slice == null) {
+            throw new BeerChangesExpiredException(since);
+        }
+
+        Map<Integer,Beer> beersById = new HashMap<>();
+        if(!slice.getIds().isEmpty()) {
+            for(Beer beer : beerRepository.retrieveByIds(slice.getIds())) {
+                beersById.put(beer.getId(), beer);
+            }
+        }
+
+        List<Beer> items = new ArrayList<>(beersById.size());
+        List<Integer> deletedIds = new ArrayList<>();
+        for(int id : slice.getIds()) {
+            Beer beer = beersById.get(id);
+            if(beer == null) {
+                deletedIds.add(id);
+            } else {
+                items.add(beer);
+            }
+        }
+
+        return new BeerChanges(items, deletedIds, slice.getSequence(), slice.isMore());
+    }
+
+    private static void checkLimit(int limit) {
+        if(limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    private static void checkRange(String property, Number min, Number max) {
+        if(min != null && max != null && min.longValue() > max.longValue()) {
+            throw new IllegalArgumentException("Minimum " + property + " is greater than the maximum " + property);
+        }
+    }
+
+    @Override
+    public void export(Consumer<Beer> action) {
+        beerRepository.forEach(action);
+    }
+
     @Override
     public Beer retrieveOne(int id) {
         Beer result = beerRepository.retrieveOne(id);
@@ -44,6 +239,43 @@ public class BeerService implements BeerPersistencePort {
         return result;
     }
 
+    /**
+     * One repository lookup for all ids, however many of them there are,
+     * instead of one per beer.
+     */
+    @Override
+    public BeerLookup retrieveByIds(List<Integer> ids) {
+        if(ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one id is required");
+        }
+        if(ids.contains(null)) {
+            throw new IllegalArgumentException("Ids cannot be empty");
+        }
+
+        Set<Integer> uniqueIds = new LinkedHashSet<>(ids);
+        if(uniqueIds.size() > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_PAGE_SIZE + " beers can be retrieved at once");
+        }
+
+        Map<Integer,Beer> beersById = new HashMap<>();
+        for(Beer beer : beerRepository.retrieveByIds(uniqueIds)) {
+            beersById.put(beer.getId(), beer);
+        }
+
+        List<Beer> items = new ArrayList<>(beersById.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for(int id : uniqueIds) {
+            Beer beer = beersById.get(id);
+            if(beer == null) {
+                missingIds.add(id);
+            } else {
+                items.add(beer);
+            }
+        }
+
+        return new BeerLookup(items, missingIds);
+    }
+
     @Override
     public Beer create(Beer beer) {
 
@@ -53,53 +285,83 @@ public class BeerService implements BeerPersistencePort {
         if(nameAlreadyExists) throw new BeerAlreadyExistsException(newBeerName);
 
         Beer insertedBeer = beerRepository.create(beer);
+        saved(insertedBeer);
         return insertedBeer;
     }
 
     @Override
     public Beer update(int id,Beer replacementBeer) {
-        Beer existingBeer = beerRepository.retrieveOne(id);
-
-        if(existingBeer == null) {
-            throw new BeerNotFoundException(id);
+        // With conditional updates the repository reports both a missing row
+        // and a taken name, so there is nothing to look up beforehand
+        if(!conditionalUpdates) {
+            Beer existingBeer = beerRepository.retrieveOne(id);
+
+            if(existingBeer == null) {
+                throw new BeerNotFoundException(id);
+            }
+            checkVersion(existingBeer, replacementBeer.getVersion());
+
+            String existingBeerName = existingBeer.getName();
+            String replacementBeerName = replacementBeer.getName();
+
+            if(!existingBeerName.equals(replacementBeerName)) {
+                boolean nameAlreadyExists = beerRepository.nameExists(replacementBeerName);
+                if(nameAlreadyExists) throw new BeerAlreadyExistsException(replacementBeerName);
+            }
         }
 
-        String existingBeerName = existingBeer.getName();
-        String replacementBeerName = replacementBeer.getName();
+        replacementBeer.setId(id);
 
-        if(existingBeerName != replacementBeerName) {
-            boolean nameAlreadyExists = beerRepository.nameExists(replacementBeerName);
-            if(nameAlreadyExists) throw new BeerAlreadyExistsException(replacementBeerName);
-        }
+        Beer replacedBeer = beerRepository.update(replacementBeer);
 
-        modelMapper.map(replacementBeer,existingBeer);
+        if(replacedBeer == null) {
+            throw notWritten(id, replacementBeer.getVersion());
+        }
 
-        Beer replacedBeer = beerRepository.update(existingBeer);
+        saved(replacedBeer);
         return replacedBeer;
     }
 
     @Override
     public Beer alter(int id , LinkedHashMap<String,Object> fields) {
-        Beer existingBeer = beerRepository.retrieveOne(id);
+        return alter(id, fields, Beer.ANY_VERSION);
+    }
 
-        if(existingBeer == null) {
-            throw new BeerNotFoundException(id);
+    @Override
+    public Beer alter(int id, LinkedHashMap<String,Object> fields, long expectedVersion) {
+        Map<String,Object> changes = toColumnChanges(fields);
+
+        if(changes.isEmpty()) {
+            Beer existingBeer = retrieveOne(id);
+            checkVersion(existingBeer, expectedVersion);
+            return existingBeer;
         }
 
-        String existingBeerName = existingBeer.getName();
+        if(!conditionalUpdates) {
+            Beer existingBeer = retrieveOne(id);
+            checkVersion(existingBeer, expectedVersion);
+
+            String existingBeerName = existingBeer.getName();
 
-        if(fields.containsKey("name") &&
-                (!existingBeerName.equals(fields.get("name")))) {
+            if(changes.containsKey("name") &&
+                    (!existingBeerName.equals(changes.get("name")))) {
 
-            String replacementBeerName = (String) fields.get("name");
+                String replacementBeerName = (String) changes.get("name");
 
-            boolean nameAlreadyExists = beerRepository.nameExists(replacementBeerName);
-            if(nameAlreadyExists) throw new BeerAlreadyExistsException(replacementBeerName);
+                boolean nameAlreadyExists = beerRepository.nameExists(replacementBeerName);
+                if(nameAlreadyExists) throw new BeerAlreadyExistsException(replacementBeerName);
+            }
         }
 
-        modelMapper.map(fields,existingBeer);
+        // Only the changed columns are written, the row is never loaded to merge them
+        Beer replacedBeer = beerRepository.alter(id, changes, expectedVersion);
+
+        if(replacedBeer == null) {
+            throw notWritten(id, expectedVersion);
+        }
+
+        saved(replacedBeer);
 
-        Beer replacedBeer = beerRepository.alter(existingBeer);
         return replacedBeer;
     }
 
@@ -111,6 +373,261 @@ public class BeerService implements BeerPersistencePort {
             throw new BeerNotFoundException(id);
         }
 
+        deleted(id);
         return numberOfDeletedRows;
     }
+
+    /**
+     * Rejects what can be rejected up front, checks names and ids for the
+     * whole batch with one lookup each, then hands the remaining entries to
+     * the repository to be written in one transaction.
+     */
+    @Override
+    public List<BeerBatchResult> applyBatch(List<BeerBatchOperation> operations) {
+        if(operations.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch can hold at most " + MAX_BATCH_SIZE + " operations");
+        }
+
+        BeerBatchResult[] results = new BeerBatchResult[operations.size()];
+        Map<String,Integer> claimedNames = new HashMap<>();
+        Set<Integer> claimedIds = new HashSet<>();
+
+        for(int i = 0; i < operations.size(); i++) {
+            BeerBatchOperation operation = operations.get(i);
+            String violation = batchViolation(operation);
+
+            if(violation != null) {
+                results[i] = rejected(i, operation, Outcome.INVALID, violation);
+            } else if(operation.getType() != Type.CREATE && !claimedIds.add(operation.getId())) {
+                results[i] = rejected(i, operation, Outcome.INVALID,
+                        "Beer " + operation.getId() + " appears more than once in the batch");
+            } else if(operation.getType() != Type.DELETE
+                    && claimedNames.putIfAbsent(operation.getBeer().getName(), i) != null) {
+                results[i] = rejected(i, operation, Outcome.NAME_TAKEN,
+                        "Beer name " + operation.getBeer().getName() + " appears more than once in the batch");
+            }
+        }
+
+        Map<String,Integer> ownersByName = beerRepository.idsByName(pendingNames(operations, results));
+        Set<Integer> existingIds = beerRepository.existingIds(pendingIds(operations, results));
+
+        List<Beer> creates = new ArrayList<>();
+        List<Integer> createIndexes = new ArrayList<>();
+        List<Beer> updates = new ArrayList<>();
+        List<Integer> deletes = new ArrayList<>();
+
+        for(int i = 0; i < operations.size(); i++) {
+            if(results[i] != null) {
+                continue;
+            }
+
+            BeerBatchOperation operation = operations.get(i);
+            Integer id = operation.getId();
+
+            if(operation.getType() != Type.CREATE && !existingIds.contains(id)) {
+                results[i] = rejected(i, operation, Outcome.NOT_FOUND, new BeerNotFoundException(id).getMessage());
+                continue;
+            }
+
+            if(operation.getType() != Type.DELETE) {
+                String name = operation.getBeer().getName();
+                Integer owner = ownersByName.get(name);
+
+                if(owner != null && !owner.equals(id)) {
+                    results[i] = rejected(i, operation, Outcome.NAME_TAKEN,
+                            new BeerAlreadyExistsException(name).getMessage());
+                    continue;
+                }
+            }
+
+            switch (operation.getType()) {
+                case CREATE:
+                    creates.add(operation.getBeer());
+                    createIndexes.add(i);
+                    break;
+                case UPDATE:
+                    operation.getBeer().setId(id);
+                    updates.add(operation.getBeer());
+                    results[i] = new BeerBatchResult(i, Type.UPDATE, id, Outcome.UPDATED, null);
+                    break;
+                case DELETE:
+                    deletes.add(id);
+                    results[i] = new BeerBatchResult(i, Type.DELETE, id, Outcome.DELETED, null);
+                    break;
+            }
+        }
+
+        if(!creates.isEmpty() || !updates.isEmpty() || !deletes.isEmpty()) {
+            BeerBatchWrite written = beerRepository.applyBatch(creates, updates, deletes);
+            List<Beer> created = written.getCreated();
+
+            deletes.forEach(this::deleted);
+            written.getUpdated().forEach(this::saved);
+            created.forEach(this::saved);
+
+            for(int i = 0; i < created.size(); i++) {
+                int index = createIndexes.get(i);
+                results[index] = new BeerBatchResult(index, Type.CREATE, created.get(i).getId(), Outcome.CREATED, null);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Puts back beers read from a copy of the catalog, keeping their ids.
+     * Nothing is validated, the copy was taken from a valid catalog.
+     */
+    @Override
+    public void restore(List<Beer> beers) {
+        beerRepository.restore(beers);
+        beers.forEach(statistics::record);
+        changeListeners.forEach(listener -> listener.beersRestored(beers));
+    }
+
+    private static void checkVersion(Beer existingBeer, long expectedVersion) {
+        if(expectedVersion != Beer.ANY_VERSION && existingBeer.getVersion() != expectedVersion) {
+            throw new BeerVersionMismatchException(existingBeer.getId());
+        }
+    }
+
+    /**
+     * A write the repository turned down either found no beer or, when it
+     * was conditional, found a newer version; only then is it worth a lookup
+     * to tell which.
+     */
+    private RuntimeException notWritten(int id, long expectedVersion) {
+        if(expectedVersion != Beer.ANY_VERSION && beerRepository.retrieveOne(id) != null) {
+            return new BeerVersionMismatchException(id);
+        }
+        return new BeerNotFoundException(id);
+    }
+
+    private void saved(Beer beer) {
+        statistics.record(beer);
+        changeLog.record(beer.getId());
+        changeListeners.forEach(listener -> listener.beerSaved(beer));
+    }
+
+    private void deleted(int id) {
+        statistics.forget(id);
+        changeLog.record(id);
+        changeListeners.forEach(listener -> listener.beerDeleted(id));
+    }
+
+    private static String batchViolation(BeerBatchOperation operation) {
+        if(operation.getViolation() != null) {
+            return operation.getViolation();
+        }
+        if(operation.getType() == null) {
+            return "Operation must be one of create, update or delete";
+        }
+        if(operation.getType() != Type.CREATE && operation.getId() == null) {
+            return "An id is required to " + operation.getType().name().toLowerCase();
+        }
+        if(operation.getType() != Type.DELETE && operation.getBeer() == null) {
+            return "A beer is required to " + operation.getType().name().toLowerCase();
+        }
+        return null;
+    }
+
+    private static BeerBatchResult rejected(int index, BeerBatchOperation operation,
+                                            Outcome outcome, String message) {
+        return new BeerBatchResult(index, operation.getType(), operation.getId(), outcome, message);
+    }
+
+    private static List<String> pendingNames(List<BeerBatchOperation> operations, BeerBatchResult[] results) {
+        List<String> names = new ArrayList<>();
+        for(int i = 0; i < operations.size(); i++) {
+            if(results[i] == null && operations.get(i).getType() != Type.DELETE) {
+                names.add(operations.get(i).getBeer().getName());
+            }
+        }
+        return names;
+    }
+
+    private static List<Integer> pendingIds(List<BeerBatchOperation> operations, BeerBatchResult[] results) {
+        List<Integer> ids = new ArrayList<>();
+        for(int i = 0; i < operations.size(); i++) {
+            if(results[i] == null && operations.get(i).getType() != Type.CREATE) {
+                ids.add(operations.get(i).getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Checks a PATCH body field by field and converts the values to the types
+     * of the matching Beer properties; price and alcohol content go to their
+     * fixed-point fields.
+     */
+    static Map<String,Object> toColumnChanges(Map<String,Object> fields) {
+        Map<String,Object> changes = new LinkedHashMap<>();
+
+        for(Map.Entry<String,Object> field : fields.entrySet()) {
+            String fieldName = field.getKey();
+            Object value = field.getValue();
+
+            switch (fieldName) {
+                case "id":
+                    // The path id always wins over the one in the body
+                    break;
+                case "name":
+                case "ingredients":
+                case "category":
+                    changes.put(fieldName, asString(fieldName, value));
+                    break;
+                case "alcoholContent":
+                    changes.put("alcoholBasisPoints",
+                            BeerUnits.parseAlcoholContent(asString(fieldName, value)));
+                    break;
+                case "price":
+                    BigDecimal price = asDecimal(fieldName, value);
+                    if(price.compareTo(BigDecimal.ZERO) <= 0) {
+                        throw new IllegalArgumentException("Price must be greater than zero");
+                    }
+                    changes.put("priceCents", BeerUnits.toCents(price));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown beer field " + fieldName);
+            }
+        }
+
+        return changes;
+    }
+
+    private static String asString(String fieldName, Object value) {
+        if(!(value instanceof String)) {
+            throw new IllegalArgumentException("Field " + fieldName + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static BigDecimal asDecimal(String fieldName, Object value) {
+        if(value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if(value instanceof Number || value instanceof String) {
+            try {
+                return new BigDecimal(value.toString());
+            } catch (NumberFormatException ex) {
+                // reported below
+            }
+        }
+        throw new IllegalArgumentException("Field " + fieldName + " must be a number");
+    }
+
+    static String encodeCursor(int id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static int decodeCursor(String cursor) {
+        try {
+            byte[] decoded = Base64.getUrlDecoder().decode(cursor);
+            return Integer.parseInt(new String(decoded, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid page cursor " + cursor);
+        }
+    }
 }
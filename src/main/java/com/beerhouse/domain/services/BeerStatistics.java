@@ -0,0 +1,141 @@
+package com.beerhouse.domain.services;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerCategoryStats;
+import com.beerhouse.domain.model.BeerUnits;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per category counts and price aggregates, kept up to date by
+ * {@link BeerService} on every write so reading them is O(categories) and
+ * never touches the database. Prices are summed and compared as cents.
+ *
+ * It remembers the category and price it counted for each beer, which is
+ * what gets taken back out when the beer is replaced or deleted; writes
+ * therefore never need to read the previous row.
+ */
+@Component
+public class BeerStatistics {
+
+    @Autowired
+    BeerRepositoryPort beerRepository;
+
+    private final ConcurrentMap<String, CategoryAccumulator> categories = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Contribution> contributions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void seed() {
+        beerRepository.forEach(this::record);
+    }
+
+    void record(Beer beer) {
+        if(beer == null || beer.getCategory() == null || beer.getPriceCents() <= 0) {
+            return;
+        }
+
+        Contribution contribution = new Contribution(beer.getCategory(), beer.getPriceCents());
+        Contribution previous = contributions.put(beer.getId(), contribution);
+
+        if(contribution.equals(previous)) {
+            return;
+        }
+        if(previous != null) {
+            subtract(previous);
+        }
+        categories.computeIfAbsent(contribution.getCategory(), category -> new CategoryAccumulator())
+                .add(contribution.getCents());
+    }
+
+    void forget(int id) {
+        Contribution previous = contributions.remove(id);
+        if(previous != null) {
+            subtract(previous);
+        }
+    }
+
+    List<BeerCategoryStats> snapshot() {
+        List<BeerCategoryStats> stats = new ArrayList<>();
+
+        for(Map.Entry<String, CategoryAccumulator> category : categories.entrySet()) {
+            BeerCategoryStats categoryStats = category.getValue().toStats(category.getKey());
+            if(categoryStats != null) {
+                stats.add(categoryStats);
+            }
+        }
+
+        stats.sort((first, second) -> first.getCategory().compareTo(second.getCategory()));
+        return stats;
+    }
+
+    private void subtract(Contribution contribution) {
+        CategoryAccumulator accumulator = categories.get(contribution.getCategory());
+        if(accumulator != null) {
+            accumulator.remove(contribution.getCents());
+        }
+    }
+
+    @Data
+    private static final class Contribution {
+        private final String category;
+        private final long cents;
+    }
+
+    /**
+     * Count and sum are striped adders; min and max come from a concurrent
+     * sorted multiset of prices so they survive deletes. None of it locks.
+     */
+    private static final class CategoryAccumulator {
+        final LongAdder count = new LongAdder();
+        final LongAdder centsSum = new LongAdder();
+        final ConcurrentSkipListMap<Long, Integer> pricesInCents = new ConcurrentSkipListMap<>();
+
+        void add(long cents) {
+            pricesInCents.merge(cents, 1, Integer::sum);
+            centsSum.add(cents);
+            count.increment();
+        }
+
+        void remove(long cents) {
+            count.decrement();
+            centsSum.add(-cents);
+            pricesInCents.computeIfPresent(cents, (price, beers) -> beers == 1 ? null : beers - 1);
+        }
+
+        /**
+         * The parts are read one after the other, so a read racing a write
+         * may combine values from before and after it.
+         */
+        BeerCategoryStats toStats(String category) {
+            long beers = count.sum();
+            if(beers <= 0) {
+                return null;
+            }
+
+            Map.Entry<Long, Integer> cheapest = pricesInCents.firstEntry();
+            Map.Entry<Long, Integer> priciest = pricesInCents.lastEntry();
+            if(cheapest == null || priciest == null) {
+                return null;
+            }
+
+            BigDecimal average = BeerUnits.fromCents(centsSum.sum())
+                    .divide(BigDecimal.valueOf(beers), RoundingMode.HALF_UP);
+
+            return new BeerCategoryStats(category, beers, BeerUnits.fromCents(cheapest.getKey()),
+                    average, BeerUnits.fromCents(priciest.getKey()));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.beerhouse.adapters.cache;
+
+import com.beerhouse.domain.model.Beer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class BeerJsonCacheTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BeerJsonCache jsonCache;
+
+    private Beer beer;
+
+    private AtomicInteger loads;
+
+    private Supplier<Beer> loader;
+
+    @Before
+    public void setUp() {
+        jsonCache = new BeerJsonCache();
+        jsonCache.objectMapper = objectMapper;
+        jsonCache.maximumSize = 32;
+        jsonCache.timeToLiveSeconds = 10;
+        jsonCache.createCache();
+
+        beer = Beer.builder()
+                .id(1)
+                .name("Heineken")
+                .ingredients("Lúpulo, água")
+                .alcoholContent("4.5%")
+                .price(BigDecimal.valueOf(4.50))
+                .category("Lager")
+                .version(7)
+                .build();
+
+        loads = new AtomicInteger();
+        loader = () -> {
+            loads.incrementAndGet();
+            return beer;
+        };
+    }
+
+    @Test
+    public void returnSuccess_get_servedFromCache() throws Exception {
+        BeerJsonCache.SerializedBeer first = jsonCache.get(1, loader);
+        BeerJsonCache.SerializedBeer second = jsonCache.get(1, loader);
+
+        assertEquals(objectMapper.writeValueAsString(beer), new String(first.getJson(), StandardCharsets.UTF_8));
+        assertEquals(7, first.getVersion());
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void returnSuccess_beerSaved_dropsEntry() throws Exception {
+        jsonCache.get(1, loader);
+        beer = beer.toBuilder().name("Heineken Zero").version(8).build();
+        jsonCache.beerSaved(beer);
+
+        BeerJsonCache.SerializedBeer serialized = jsonCache.get(1, loader);
+
+        assertEquals(objectMapper.writeValueAsString(beer), new String(serialized.getJson(), StandardCharsets.UTF_8));
+        assertEquals(8, serialized.getVersion());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void returnSuccess_get_loadRacingWriteIsNotCached() throws Exception {
+        jsonCache.get(1, () -> {
+            // A write lands while the beer is being loaded
+            jsonCache.beerDeleted(1);
+            return beer;
+        });
+
+        jsonCache.get(1, loader);
+
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,149 @@
+package com.beerhouse.adapters.cache;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachingBeerRepositoryTests {
+
+    private BeerRepositoryPort beerRepository;
+
+    private AtomicLong now;
+
+    private CachingBeerRepository cachingRepository;
+
+    private Beer beer;
+
+    @Before
+    public void setUp() {
+        beerRepository = Mockito.mock(BeerRepositoryPort.class);
+        now = new AtomicLong();
+        cachingRepository = new CachingBeerRepository(beerRepository,
+                new BeerCache<>(32, 10, TimeUnit.SECONDS, now::get));
+
+        beer = Beer.builder()
+                .id(1)
+                .name("Heineken")
+                .ingredients("Lúpulo, água")
+                .alcoholContent("4.5%")
+                .price(BigDecimal.valueOf(4.50))
+                .category("Lager")
+                .build();
+    }
+
+    @Test
+    public void returnSuccess_retrieveOne_servedFromCache() {
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(beer);
+
+        assertEquals(beer, cachingRepository.retrieveOne(1));
+        assertEquals(beer, cachingRepository.retrieveOne(1));
+
+        Mockito.verify(beerRepository, Mockito.times(1)).retrieveOne(1);
+        assertEquals(1, cachingRepository.getHitCount());
+        assertEquals(1, cachingRepository.getMissCount());
+    }
+
+    @Test
+    public void returnSuccess_retrieveByIds_loadsOnlyMisses() {
+        Beer other = beer.toBuilder().id(2).name("Eisenbahn").build();
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(beer);
+        Mockito.when(beerRepository.retrieveByIds(Arrays.asList(2, 3))).thenReturn(Collections.singletonList(other));
+
+        cachingRepository.retrieveOne(1);
+
+        assertEquals(Arrays.asList(beer, other), cachingRepository.retrieveByIds(Arrays.asList(1, 2, 3)));
+        assertEquals(other, cachingRepository.retrieveOne(2));
+        Mockito.verify(beerRepository, Mockito.never()).retrieveOne(2);
+    }
+
+    @Test
+    public void returnSuccess_retrieveOne_notFoundIsNotCached() {
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(null);
+
+        assertNull(cachingRepository.retrieveOne(1));
+        assertNull(cachingRepository.retrieveOne(1));
+
+        Mockito.verify(beerRepository, Mockito.times(2)).retrieveOne(1);
+    }
+
+    @Test
+    public void returnSuccess_retrieveOne_callersCannotChangeCachedBeer() {
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(beer);
+
+        cachingRepository.retrieveOne(1).setName("Brahma");
+
+        assertEquals("Heineken", cachingRepository.retrieveOne(1).getName());
+    }
+
+    @Test
+    public void returnSuccess_update_invalidatesEntry() {
+        Beer replacementBeer = beer.toBuilder().name("Eisenbahn").build();
+
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(beer, replacementBeer);
+        Mockito.when(beerRepository.update(replacementBeer)).thenReturn(replacementBeer);
+
+        cachingRepository.retrieveOne(1);
+        cachingRepository.update(replacementBeer);
+
+        assertEquals(replacementBeer, cachingRepository.retrieveOne(1));
+        Mockito.verify(beerRepository, Mockito.times(2)).retrieveOne(1);
+    }
+
+    @Test
+    public void returnSuccess_delete_invalidatesEntry() {
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(beer, (Beer) null);
+        Mockito.when(beerRepository.delete(1)).thenReturn(1L);
+
+        cachingRepository.retrieveOne(1);
+        cachingRepository.delete(1);
+
+        assertNull(cachingRepository.retrieveOne(1));
+    }
+
+    @Test
+    public void returnSuccess_retrieveOne_expiresAfterTimeToLive() {
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(beer);
+
+        cachingRepository.retrieveOne(1);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        cachingRepository.retrieveOne(1);
+
+        Mockito.verify(beerRepository, Mockito.times(2)).retrieveOne(1);
+        assertEquals(1, cachingRepository.getEvictionCount());
+    }
+
+    @Test
+    public void returnSuccess_retrieveOne_boundedBySize() {
+        for(int id = 1; id <= 1000; id++) {
+            Mockito.when(beerRepository.retrieveOne(id)).thenReturn(beer.toBuilder().id(id).build());
+            cachingRepository.retrieveOne(id);
+        }
+
+        assertTrue(cachingRepository.getSize() <= 32);
+        assertEquals(1000, cachingRepository.getSize() + cachingRepository.getEvictionCount());
+    }
+
+    @Test
+    public void returnSuccess_cache_holdsExactlyMaximumSize() {
+        for(int maximumSize : new int[] {1, 5, 20, 33}) {
+            BeerCache<Integer> cache = new BeerCache<>(maximumSize, 10, TimeUnit.SECONDS, now::get);
+            for(int id = 1; id <= 1000; id++) {
+                cache.putIfUnchanged(id, id, cache.stamp());
+            }
+
+            assertEquals(maximumSize, cache.size());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.beerhouse.adapters.cache;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CoalescingBeerRepositoryTests {
+
+    private static final int CALLERS = 8;
+
+    private BeerRepositoryPort beerRepository;
+
+    // Counted down by every caller that joins the running load
+    private CountDownLatch joined;
+
+    private CoalescingBeerRepository coalescingRepository;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        beerRepository = Mockito.mock(BeerRepositoryPort.class);
+        joined = new CountDownLatch(CALLERS - 1);
+        coalescingRepository = new CoalescingBeerRepository(beerRepository, joined::countDown);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void returnSuccess_retrieveOne_concurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        Mockito.when(beerRepository.retrieveOne(1)).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            awaitJoined();
+            return Beer.builder().id(1).name("Heineken").build();
+        });
+
+        for(Future<Beer> result : startCallers()) {
+            assertEquals("Heineken", result.get(5, TimeUnit.SECONDS).getName());
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void returnSuccess_retrieveOne_concurrentCallersShareMissingBeer() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        Mockito.when(beerRepository.retrieveOne(1)).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            awaitJoined();
+            return null;
+        });
+
+        for(Future<Beer> result : startCallers()) {
+            assertNull(result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void returnFailure_retrieveOne_concurrentCallersShareOneFailure() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        Mockito.when(beerRepository.retrieveOne(1)).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            awaitJoined();
+            throw new IllegalStateException("Connection lost");
+        });
+
+        for(Future<Beer> result : startCallers()) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("Expected the shared load to fail");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof IllegalStateException);
+            }
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void returnSuccess_retrieveOne_sequentialCallersLoadAgain() {
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(Beer.builder().id(1).build());
+
+        coalescingRepository.retrieveOne(1);
+        coalescingRepository.retrieveOne(1);
+
+        Mockito.verify(beerRepository, Mockito.times(2)).retrieveOne(1);
+    }
+
+    @Test
+    public void returnSuccess_retrieveOne_callersAfterCreateLoadAgain() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Beer heineken = Beer.builder().id(1).name("Heineken").build();
+
+        Mockito.when(beerRepository.retrieveOne(1)).thenAnswer(invocation -> {
+            if(loads.incrementAndGet() > 1) {
+                return heineken;
+            }
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        Mockito.when(beerRepository.create(Mockito.any())).thenReturn(heineken);
+
+        Future<Beer> before = executor.submit(() -> coalescingRepository.retrieveOne(1));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        coalescingRepository.create(heineken);
+        Future<Beer> after = executor.submit(() -> coalescingRepository.retrieveOne(1));
+
+        try {
+            assertEquals("Heineken", after.get(5, TimeUnit.SECONDS).getName());
+        } finally {
+            release.countDown();
+        }
+        assertNull(before.get(5, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+    }
+
+    private List<Future<Beer>> startCallers() {
+        List<Future<Beer>> results = new ArrayList<>();
+        for(int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> coalescingRepository.retrieveOne(1)));
+        }
+        return results;
+    }
+
+    /**
+     * Holds the load until every other caller has found it running.
+     */
+    private void awaitJoined() throws InterruptedException {
+        if(!joined.await(5, TimeUnit.SECONDS)) {
+            throw new AssertionError("Callers did not join the running load");
+        }
+    }
+}
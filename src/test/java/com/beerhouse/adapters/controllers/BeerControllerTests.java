@@ -1,18 +1,22 @@
 package com.beerhouse.adapters.controllers;
 
-import com.beerhouse.application.config.BeanConfig;
 import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerChanges;
+import com.beerhouse.domain.model.BeerLookup;
 import com.beerhouse.domain.model.exception.BeerAlreadyExistsException;
 import com.beerhouse.domain.model.exception.BeerNotFoundException;
+import com.beerhouse.domain.model.exception.BeerVersionMismatchException;
 import com.beerhouse.domain.model.exception.NoBeersFoundException;
 import com.beerhouse.domain.ports.BeerPersistencePort;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -20,18 +24,21 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @ContextConfiguration(classes = {
         BeerController.class,
-        BeanConfig.class,
         ObjectMapper.class,
         BeerControllerAdvice.class
 })
@@ -57,6 +64,9 @@ public class BeerControllerTests {
                 .standaloneSetup(beerController)
                 .setControllerAdvice(beerControllerAdvice)
                 .build();
+
+        Mockito.when(beerService.retrieveChanges(null, 1))
+                .thenReturn(new BeerChanges(Collections.emptyList(), Collections.emptyList(), 42, false));
     }
 
     @Test
@@ -68,6 +78,18 @@ public class BeerControllerTests {
                 .andDo(print()).andExpect(status().isOk());
     }
 
+    @Test
+    public void returnSuccess_retrieveBeer_notModified() throws Exception {
+        Mockito.when(beerService.retrieveOne(1)).thenReturn(Beer.builder().id(1).version(3).build());
+
+        mvc.perform(get("/beers/1").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified());
+
+        mvc.perform(get("/beers/1").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+    }
+
     @Test
     public void returnFailure_retrieveBeer_notFound() throws Exception {
         Mockito.when(beerService.retrieveOne(1)).thenThrow(new BeerNotFoundException(1));
@@ -92,6 +114,65 @@ public class BeerControllerTests {
     }
 
 
+    @Test
+    public void returnSuccess_retrieveBeersByIds() throws Exception {
+        Mockito.when(beerService.retrieveByIds(Arrays.asList(1, 5, 9))).thenReturn(new BeerLookup(
+                Collections.singletonList(Beer.builder().id(5).name("Heineken").build()), Arrays.asList(1, 9)));
+
+        mvc.perform(get("/beers").param("ids", "1,5,9"))
+                .andExpect(status().isOk())
+                .andExpect(result -> assertTrue(result.getResponse().getContentAsString()
+                        .contains("\"missingIds\":[1,9]")));
+
+        mvc.perform(post("/beers/lookup")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content("[1,5,9]"))
+                .andExpect(status().isOk());
+
+        Mockito.verify(beerService, Mockito.times(2)).retrieveByIds(Arrays.asList(1, 5, 9));
+        Mockito.verify(beerService, Mockito.never()).retrieveMany();
+    }
+
+    @Test
+    public void returnFailure_retrieveBeers_combinedSelectors() throws Exception {
+        mvc.perform(get("/beers").param("ids", "1").param("fields", "name"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/beers").param("sort", "price").param("category", "Lager").param("fields", "id"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/beers").param("sort", "price").param("ids", "1"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/beers").param("ids", "1").param("category", "Lager"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/beers").param("ids", "1").param("limit", "1"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/beers").param("ids", "1").param("maxPrice", "5"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void returnSuccess_exportBeers() throws Exception {
+        Beer beer = Beer.builder()
+                .id(1)
+                .name("Heineken")
+                .build();
+
+        Mockito.doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Consumer<Beer> action = (Consumer<Beer>) invocation.getArguments()[0];
+            action.accept(beer);
+            action.accept(beer);
+            return null;
+        }).when(beerService).export(Mockito.any());
+
+        mvc.perform(get("/beers/export")
+                .accept("application/x-ndjson"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(BeerController.SEQUENCE_HEADER, "42"))
+                .andExpect(result -> assertEquals(2,
+                        result.getResponse().getContentAsString().split("\n").length));
+    }
+
     @Test
     public void returnFailure_retrieveBeers_noneFound() throws Exception {
         Mockito.when(beerService.retrieveMany()).thenThrow(new NoBeersFoundException());
@@ -149,6 +230,20 @@ public class BeerControllerTests {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void returnFailure_createBeer_zeroPrice() throws Exception {
+
+        mvc.perform(post("/beers")
+                .content("{\"id\":1,\"name\":\"Heineken\",\"ingredients\":\"Lúpulo, água\"," +
+                        "\"alcoholContent\":\"4.5%\",\"price\":0,\"category\":\"Lager\"}")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(beerService, Mockito.never()).create(Mockito.any(Beer.class));
+    }
+
     @Test
     public void returnFailure_createBeer_nameAlreadyExists() throws Exception {
 
@@ -197,6 +292,32 @@ public class BeerControllerTests {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void returnFailure_updateBeer_versionChanged() throws Exception {
+        Beer beer = Beer.builder()
+                .id(1)
+                .name("Heineken")
+                .ingredients("Lúpulo, água")
+                .alcoholContent("4.5%")
+                .price(BigDecimal.valueOf(4.50))
+                .category("Lager")
+                .build();
+
+        Mockito.when(beerService.update(Mockito.eq(1), Mockito.any(Beer.class)))
+                .thenThrow(new BeerVersionMismatchException(1));
+
+        mvc.perform(put("/beers/1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .content(objectMapper.writeValueAsString(beer))
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(status().isPreconditionFailed());
+
+        ArgumentCaptor<Beer> replacementBeer = ArgumentCaptor.forClass(Beer.class);
+        Mockito.verify(beerService).update(Mockito.eq(1), replacementBeer.capture());
+        assertEquals(3, replacementBeer.getValue().getVersion());
+    }
+
     @Test
     public void returnFailure_updateBeerWithIncompleteBody() throws Exception {
         Beer beer = Beer.builder()
@@ -234,6 +355,8 @@ public class BeerControllerTests {
         fields.put("category","Pilsen");
         fields.put("name","Brahma");
 
+        Mockito.when(beerService.alter(1, fields, Beer.ANY_VERSION)).thenReturn(beer);
+
         mvc.perform(patch("/beers/1").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(fields))
                 .contentType(MediaType.APPLICATION_JSON)
@@ -242,6 +365,56 @@ public class BeerControllerTests {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void returnSuccess_patchBeer() throws Exception {
+        LinkedHashMap<String,Object> fields = new LinkedHashMap<>();
+        fields.put("category","Pilsen");
+
+        Mockito.when(beerService.alter(1, fields, Beer.ANY_VERSION))
+                .thenReturn(Beer.builder().id(1).category("Pilsen").build());
+
+        mvc.perform(patch("/beers/1").contentType("application/json-patch+json")
+                .content("[{\"op\":\"replace\",\"path\":\"/category\",\"value\":\"Pilsen\"}]")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        Mockito.verify(beerService, Mockito.never()).retrieveOne(1);
+        Mockito.verify(beerService).alter(1, fields, Beer.ANY_VERSION);
+    }
+
+    @Test
+    public void returnSuccess_patchBeer_altersOnlyVersionRead() throws Exception {
+        Mockito.when(beerService.retrieveOne(1))
+                .thenReturn(Beer.builder().id(1).name("Heineken").category("Lager").version(3).build());
+        Mockito.when(beerService.alter(Mockito.eq(1), Mockito.any(), Mockito.eq(3L)))
+                .thenReturn(Beer.builder().id(1).name("Heineken").version(4).build());
+
+        mvc.perform(patch("/beers/1").contentType("application/json-patch+json")
+                .content("[{\"op\":\"remove\",\"path\":\"/category\"}]")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        Mockito.verify(beerService).alter(Mockito.eq(1), Mockito.any(), Mockito.eq(3L));
+    }
+
+    @Test
+    public void returnFailure_patchBeer_readVersionNotMatched() throws Exception {
+        Mockito.when(beerService.retrieveOne(1))
+                .thenReturn(Beer.builder().id(1).name("Heineken").category("Lager").version(3).build());
+
+        mvc.perform(patch("/beers/1").contentType("application/json-patch+json")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .content("[{\"op\":\"remove\",\"path\":\"/category\"}]")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verify(beerService, Mockito.never())
+                .alter(Mockito.anyInt(), Mockito.any(), Mockito.anyLong());
+    }
+
     @Test
     public void returnSuccess_deleteBeer() throws Exception {
 
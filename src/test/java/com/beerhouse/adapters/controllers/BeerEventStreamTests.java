@@ -0,0 +1,214 @@
+package com.beerhouse.adapters.controllers;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerChanges;
+import com.beerhouse.domain.model.exception.BeerChangesExpiredException;
+import com.beerhouse.domain.ports.BeerPersistencePort;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+public class BeerEventStreamTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BeerPersistencePort beerService;
+    private BeerEventStream eventStream;
+    private MockMvc mvc;
+
+    @Before
+    public void setUp() {
+        beerService = Mockito.mock(BeerPersistencePort.class);
+        Mockito.when(beerService.retrieveChanges(null, 1)).thenReturn(changes(Collections.emptyList(), 10));
+
+        eventStream = new BeerEventStream();
+        eventStream.beerService = beerService;
+        eventStream.objectMapper = objectMapper;
+        eventStream.bufferSize = 16;
+        eventStream.writerThreads = 1;
+        eventStream.timeoutMillis = 10000;
+        eventStream.slowConsumerMillis = 100;
+        eventStream.createWriters();
+        eventStream.start();
+
+        BeerController beerController = new BeerController();
+        ReflectionTestUtils.setField(beerController, "beerService", beerService);
+        ReflectionTestUtils.setField(beerController, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(beerController, "eventStream", eventStream);
+        mvc = MockMvcBuilders.standaloneSetup(beerController).build();
+    }
+
+    @After
+    public void tearDown() {
+        eventStream.stop();
+    }
+
+    @Test
+    public void returnSuccess_streamBeerEvents_sendsWrites() throws Exception {
+        Beer beer = beer(1, "Heineken");
+        Mockito.when(beerService.retrieveChanges(10L, 16)).thenReturn(changes(Arrays.asList(beer), 11));
+
+        MvcResult result = mvc.perform(get("/beers/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result, "event:ready\nid:10\ndata:\n\n");
+
+        eventStream.beerSaved(beer);
+
+        awaitContent(result, "event:saved\nid:11\ndata:" + objectMapper.writeValueAsString(beer) + "\n\n");
+    }
+
+    @Test
+    public void returnSuccess_streamBeerEvents_resumesAfterLastEventId() throws Exception {
+        Mockito.when(beerService.retrieveChanges(5L, 16))
+                .thenReturn(new BeerChanges(Collections.emptyList(), Arrays.asList(3), 10, false));
+
+        MvcResult result = mvc.perform(get("/beers/events").header("Last-Event-ID", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        awaitContent(result, "event:deleted\nid:10\ndata:{\"id\":3}\n\n");
+    }
+
+    @Test
+    public void returnSuccess_streamBeerEvents_resetsWhenChangesExpired() throws Exception {
+        Mockito.when(beerService.retrieveChanges(1L, 16)).thenThrow(new BeerChangesExpiredException(1));
+
+        MvcResult result = mvc.perform(get("/beers/events").header("Last-Event-ID", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        awaitContent(result, "event:reset\ndata:\n\n");
+    }
+
+    @Test
+    public void returnSuccess_streamBeerEvents_sendsBurstLargerThanBuffer() throws Exception {
+        Mockito.when(beerService.retrieveChanges(10L, 16))
+                .thenReturn(new BeerChanges(beers(0, 16), Collections.emptyList(), 11, true));
+        Mockito.when(beerService.retrieveChanges(11L, 16))
+                .thenReturn(new BeerChanges(beers(16, 16), Collections.emptyList(), 12, true));
+        Mockito.when(beerService.retrieveChanges(12L, 16))
+                .thenReturn(new BeerChanges(beers(32, 8), Collections.emptyList(), 13, false));
+
+        MvcResult result = mvc.perform(get("/beers/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result, "event:ready\nid:10\ndata:\n\n");
+
+        eventStream.beerSaved(beer(1, "Heineken"));
+
+        awaitContent(result, "id:13\n");
+        String content = result.getResponse().getContentAsString();
+        assertEquals(40, content.split("event:saved").length - 1);
+        assertEquals(0, eventStream.getSlowConsumerCount());
+        assertEquals(1, eventStream.getSubscriberCount());
+    }
+
+    @Test
+    public void returnSuccess_streamBeerEvents_resumesFurtherBehindThanBuffer() throws Exception {
+        Mockito.when(beerService.retrieveChanges(5L, 16))
+                .thenReturn(new BeerChanges(beers(0, 16), Collections.emptyList(), 7, true));
+        Mockito.when(beerService.retrieveChanges(7L, 16))
+                .thenReturn(new BeerChanges(beers(16, 16), Collections.emptyList(), 10, false));
+
+        MvcResult result = mvc.perform(get("/beers/events").header("Last-Event-ID", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        awaitContent(result, "id:10\n");
+        String content = result.getResponse().getContentAsString();
+        assertEquals(32, content.split("event:saved").length - 1);
+        assertEquals(0, eventStream.getSlowConsumerCount());
+        assertEquals(1, eventStream.getSubscriberCount());
+    }
+
+    @Test
+    public void returnSuccess_streamBeerEvents_disconnectsSlowConsumer() throws Exception {
+        Mockito.when(beerService.retrieveChanges(10L, 16))
+                .thenReturn(new BeerChanges(beers(0, 16), Collections.emptyList(), 11, true));
+        Mockito.when(beerService.retrieveChanges(11L, 16))
+                .thenReturn(new BeerChanges(beers(16, 1), Collections.emptyList(), 12, false));
+        Mockito.when(beerService.retrieveChanges(12L, 16)).thenReturn(changes(Collections.emptyList(), 12));
+
+        MvcResult result = mvc.perform(get("/beers/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result, "event:ready\nid:10\ndata:\n\n");
+
+        // Keeps the only writer busy, so nothing drains the subscriber's buffer
+        CountDownLatch release = new CountDownLatch(1);
+        eventStream.writers.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try {
+            // The first round fills the buffer, the second leaves the subscriber behind
+            eventStream.beerSaved(beer(1, "Heineken"));
+
+            // Later rounds find it still behind, and eventually stalled for longer than allowed
+            for(int attempt = 0; attempt < 500 && eventStream.getSlowConsumerCount() == 0; attempt++) {
+                Thread.sleep(10);
+                eventStream.beerSaved(beer(1, "Heineken"));
+            }
+            assertEquals(1, eventStream.getSlowConsumerCount());
+            assertEquals(0, eventStream.getSubscriberCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void awaitContent(MvcResult result, String expected) throws Exception {
+        for(int attempt = 0; attempt < 500; attempt++) {
+            if(result.getResponse().getContentAsString().contains(expected)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail(result.getResponse().getContentAsString());
+    }
+
+    private static List<Beer> beers(int from, int count) {
+        List<Beer> beers = new ArrayList<>();
+        for(int id = from; id < from + count; id++) {
+            beers.add(beer(id, "Beer " + id));
+        }
+        return beers;
+    }
+
+    private static BeerChanges changes(List<Beer> items, long sequence) {
+        return new BeerChanges(items, Collections.emptyList(), sequence, false);
+    }
+
+    private static Beer beer(int id, String name) {
+        return Beer.builder()
+                .id(id)
+                .name(name)
+                .ingredients("Malt, hops")
+                .alcoholContent("4.5%")
+                .price(new BigDecimal("4.50"))
+                .category("Lager")
+                .build();
+    }
+}
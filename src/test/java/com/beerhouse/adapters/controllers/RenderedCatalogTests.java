@@ -0,0 +1,226 @@
+package com.beerhouse.adapters.controllers;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerChanges;
+import com.beerhouse.domain.ports.BeerPersistencePort;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class RenderedCatalogTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BeerPersistencePort beerService;
+    private RenderedCatalog renderedCatalog;
+    private MockMvc mvc;
+
+    private List<Beer> beers;
+
+    @Before
+    public void setUp() throws IOException {
+        beers = Arrays.asList(beer(1, "Heineken"), beer(2, "Eisenbahn"));
+
+        beerService = Mockito.mock(BeerPersistencePort.class);
+        Mockito.when(beerService.retrieveChanges(null, 1))
+                .thenReturn(new BeerChanges(Collections.emptyList(), Collections.emptyList(), 42, false));
+        Mockito.doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Consumer<Beer> action = (Consumer<Beer>) invocation.getArguments()[0];
+            beers.forEach(action);
+            return null;
+        }).when(beerService).export(Mockito.any());
+
+        renderedCatalog = new RenderedCatalog();
+        renderedCatalog.beerService = beerService;
+        renderedCatalog.objectMapper = objectMapper;
+        renderedCatalog.directory = folder.getRoot().getPath();
+        renderedCatalog.gzip = true;
+        renderedCatalog.retentionMillis = 60000;
+        renderedCatalog.createDirectory();
+        renderedCatalog.render();
+
+        BeerController beerController = new BeerController();
+        ReflectionTestUtils.setField(beerController, "beerService", beerService);
+        ReflectionTestUtils.setField(beerController, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(beerController, "renderedCatalog", renderedCatalog);
+        mvc = MockMvcBuilders.standaloneSetup(beerController).build();
+    }
+
+    @Test
+    public void returnSuccess_retrieveBeers_servesRendering() throws Exception {
+        MvcResult result = mvc.perform(get("/beers"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, renderedCatalog.current().getEtag()))
+                .andExpect(header().string(BeerController.SEQUENCE_HEADER, "42"))
+                .andReturn();
+
+        assertEquals(objectMapper.writeValueAsString(beers), result.getResponse().getContentAsString());
+        Mockito.verify(beerService, Mockito.never()).retrieveMany();
+    }
+
+    @Test
+    public void returnSuccess_render_pinsSequenceTakenBeforeExport() throws Exception {
+        AtomicLong sequence = new AtomicLong(43);
+        Mockito.when(beerService.retrieveChanges(null, 1)).thenAnswer(invocation ->
+                new BeerChanges(Collections.emptyList(), Collections.emptyList(), sequence.get(), false));
+        Mockito.doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Consumer<Beer> action = (Consumer<Beer>) invocation.getArguments()[0];
+            beers.forEach(action);
+            // A write that may or may not have made it into the export
+            sequence.incrementAndGet();
+            return null;
+        }).when(beerService).export(Mockito.any());
+
+        renderedCatalog.render();
+
+        assertEquals(43, renderedCatalog.current().getSequence());
+    }
+
+    @Test
+    public void returnSuccess_retrieveBeers_servesGzippedRendering() throws Exception {
+        MvcResult result = mvc.perform(get("/beers").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, renderedCatalog.current().getGzipEtag()))
+                .andReturn();
+
+        GZIPInputStream body = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertEquals(objectMapper.writeValueAsString(beers), readAll(body));
+    }
+
+    @Test
+    public void returnSuccess_retrieveBeers_notModified() throws Exception {
+        mvc.perform(get("/beers").header(HttpHeaders.IF_NONE_MATCH, renderedCatalog.current().getEtag()))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void returnSuccess_render_keepsReplacedRenderingsForRetention() throws Exception {
+        String firstEtag = renderedCatalog.current().getEtag();
+
+        beers = Arrays.asList(beer(1, "Heineken"));
+        renderedCatalog.render();
+        beers = Arrays.asList(beer(2, "Eisenbahn"));
+        renderedCatalog.render();
+
+        assertNotEquals(firstEtag, renderedCatalog.current().getEtag());
+        // Current and both replaced renderings, each as JSON and gzip
+        assertEquals(6, Files.list(renderedCatalog.current().getJson().getParent()).count());
+    }
+
+    @Test
+    public void returnSuccess_render_deletesRenderingsPastRetention() throws Exception {
+        renderedCatalog.retentionMillis = 0;
+
+        beers = Arrays.asList(beer(1, "Heineken"));
+        renderedCatalog.render();
+        beers = Arrays.asList(beer(2, "Eisenbahn"));
+        renderedCatalog.render();
+
+        // Only the current rendering, as JSON and gzip
+        assertEquals(2, Files.list(renderedCatalog.current().getJson().getParent()).count());
+    }
+
+    @Test
+    public void returnSuccess_render_leavesOtherInstancesFiles() throws Exception {
+        RenderedCatalog other = new RenderedCatalog();
+        other.beerService = beerService;
+        other.objectMapper = objectMapper;
+        other.directory = folder.getRoot().getPath();
+        other.gzip = true;
+        other.createDirectory();
+
+        beers = Arrays.asList(beer(3, "Brahma"));
+        other.render();
+        other.render();
+
+        assertTrue(Files.exists(renderedCatalog.current().getJson()));
+        assertTrue(Files.exists(renderedCatalog.current().getGzip()));
+
+        other.stop();
+        assertTrue(Files.exists(renderedCatalog.current().getJson()));
+    }
+
+    @Test
+    public void returnSuccess_render_emptyCatalogFallsBack() throws Exception {
+        beers = Arrays.asList();
+        renderedCatalog.render();
+
+        assertNull(renderedCatalog.current());
+    }
+
+    @Test
+    public void returnSuccess_render_failureFallsBackAndRetries() throws Exception {
+        Mockito.doThrow(new IllegalStateException("Connection lost"))
+                .doAnswer(invocation -> {
+                    @SuppressWarnings("unchecked")
+                    Consumer<Beer> action = (Consumer<Beer>) invocation.getArguments()[0];
+                    beers.forEach(action);
+                    return null;
+                })
+                .when(beerService).export(Mockito.any());
+
+        renderedCatalog.renderQuietly();
+        assertNull(renderedCatalog.current());
+
+        for(int attempt = 0; attempt < 500 && renderedCatalog.current() == null; attempt++) {
+            Thread.sleep(10);
+        }
+        assertNotNull(renderedCatalog.current());
+        renderedCatalog.stop();
+    }
+
+    private static String readAll(GZIPInputStream in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        byte[] buffer = new byte[4096];
+        for(int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+            text.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+        }
+        return text.toString();
+    }
+
+    private static Beer beer(int id, String name) {
+        return Beer.builder()
+                .id(id)
+                .name(name)
+                .ingredients("Malt, hops")
+                .alcoholContent("4.5%")
+                .price(new BigDecimal("4.50"))
+                .category("Lager")
+                .build();
+    }
+}
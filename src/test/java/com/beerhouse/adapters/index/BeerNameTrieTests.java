@@ -0,0 +1,50 @@
+package com.beerhouse.adapters.index;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BeerNameTrieTests {
+
+    private final BeerNameTrie trie = BeerNameTrie.EMPTY
+            .with("Brahma")
+            .with("Bohemia")
+            .with("Brahma Extra")
+            .with("Budweiser")
+            .with("Eisenbahn");
+
+    @Test
+    public void returnSuccess_startingWith_alphabeticalUpToLimit() {
+        assertEquals(Arrays.asList("Bohemia", "Brahma", "Brahma Extra"), trie.startingWith("b", 3));
+        assertEquals(Arrays.asList("Brahma", "Brahma Extra"), trie.startingWith("BRAH", 10));
+        assertEquals(Collections.singletonList("Budweiser"), trie.startingWith("bu", 10));
+        assertTrue(trie.startingWith("bx", 10).isEmpty());
+    }
+
+    @Test
+    public void returnSuccess_startingWith_ignoresAccents() {
+        BeerNameTrie withAccents = trie.with("Brüder");
+
+        assertEquals(Collections.singletonList("Brüder"), withAccents.startingWith("brud", 10));
+    }
+
+    @Test
+    public void returnSuccess_without_keepsPreviousSnapshot() {
+        BeerNameTrie withoutBrahma = trie.without("Brahma");
+
+        assertEquals(Collections.singletonList("Brahma Extra"), withoutBrahma.startingWith("brah", 10));
+        assertEquals(Arrays.asList("Brahma", "Brahma Extra"), trie.startingWith("brah", 10));
+    }
+
+    @Test
+    public void returnSuccess_without_mergesEmptiedNodes() {
+        BeerNameTrie remaining = trie.without("Bohemia").without("Budweiser").without("Brahma");
+
+        assertEquals(Collections.singletonList("Brahma Extra"), remaining.startingWith("b", 10));
+        assertEquals(Collections.singletonList("Eisenbahn"), remaining.startingWith("", 10));
+    }
+}
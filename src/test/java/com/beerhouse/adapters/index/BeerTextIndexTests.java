@@ -0,0 +1,75 @@
+package com.beerhouse.adapters.index;
+
+import com.beerhouse.domain.model.Beer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BeerTextIndexTests {
+
+    private BeerTextIndex index;
+
+    @Before
+    public void setUp() {
+        index = new BeerTextIndex();
+        index.put(Beer.builder().id(1).name("Heineken").category("Lager")
+                .ingredients("Água, malte, lúpulo").build());
+        index.put(Beer.builder().id(2).name("Citra IPA").category("IPA")
+                .ingredients("Água, malte, lúpulo citra").build());
+        index.put(Beer.builder().id(3).name("Juicy").category("IPA")
+                .ingredients("Água, malte, lúpulo citra, mosaic").build());
+    }
+
+    @Test
+    public void returnSuccess_search_ranksByMatchedTermsThenWeight() {
+        assertArrayEquals(new int[] {3, 2}, index.search("citra mosaic", 10));
+        assertArrayEquals(new int[] {2, 3}, index.search("citra", 10));
+    }
+
+    @Test
+    public void returnSuccess_search_ignoresCaseAndAccents() {
+        assertArrayEquals(new int[] {1, 2, 3}, index.search("LUPULO", 10));
+    }
+
+    @Test
+    public void returnSuccess_search_honoursLimit() {
+        assertArrayEquals(new int[] {1, 2}, index.search("agua", 2));
+    }
+
+    @Test
+    public void returnSuccess_search_keepsBestHitsOfManyMatches() {
+        for(int id = 10; id < 200; id++) {
+            index.put(Beer.builder().id(id).name("Beer " + id).category(id % 50 == 0 ? "Citra" : "Lager")
+                    .ingredients("Água, malte, citra").build());
+        }
+
+        assertArrayEquals(new int[] {2, 50, 100, 150}, index.search("citra", 4));
+    }
+
+    @Test
+    public void returnSuccess_search_findsLargestId() {
+        index.put(Beer.builder().id(Integer.MAX_VALUE).name("Mosaic").category("IPA")
+                .ingredients("Água").build());
+
+        assertArrayEquals(new int[] {Integer.MAX_VALUE, 3}, index.search("mosaic", 10));
+    }
+
+    @Test
+    public void returnSuccess_put_replacesTermsOfUpdatedBeer() {
+        index.put(Beer.builder().id(2).name("Session").category("Pale Ale")
+                .ingredients("Água, malte").build());
+
+        assertArrayEquals(new int[] {3}, index.search("citra", 10));
+        assertArrayEquals(new int[] {2}, index.search("session", 10));
+    }
+
+    @Test
+    public void returnSuccess_remove_dropsBeer() {
+        index.remove(3);
+
+        assertArrayEquals(new int[0], index.search("mosaic", 10));
+        assertEquals(2, index.size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.beerhouse.adapters.index;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.ports.BeerRepositoryPort;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NameIndexingBeerRepositoryTests {
+
+    private BeerRepositoryPort beerRepository;
+
+    private NameIndexingBeerRepository indexingRepository;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        beerRepository = Mockito.mock(BeerRepositoryPort.class);
+
+        Mockito.doAnswer(invocation -> {
+            Consumer<Beer> action = (Consumer<Beer>) invocation.getArguments()[0];
+            action.accept(Beer.builder().id(1).name("Heineken").build());
+            return null;
+        }).when(beerRepository).forEach(Mockito.any());
+
+        indexingRepository = new NameIndexingBeerRepository(beerRepository, 16);
+        indexingRepository.seed();
+    }
+
+    @Test
+    public void returnSuccess_nameExists_answeredFromIndex() {
+        assertTrue(indexingRepository.nameExists("Heineken"));
+        assertFalse(indexingRepository.nameExists("Eisenbahn"));
+
+        Mockito.verify(beerRepository, Mockito.never()).nameExists(Mockito.anyString());
+    }
+
+    @Test
+    public void returnSuccess_create_addsName() {
+        Beer beer = Beer.builder().id(2).name("Eisenbahn").build();
+        Mockito.when(beerRepository.create(beer)).thenReturn(beer);
+
+        indexingRepository.create(beer);
+
+        assertTrue(indexingRepository.nameExists("Eisenbahn"));
+    }
+
+    @Test
+    public void returnSuccess_update_releasesOldName() {
+        Beer beer = Beer.builder().id(1).name("Brahma").build();
+        Mockito.when(beerRepository.update(beer)).thenReturn(beer);
+
+        indexingRepository.update(beer);
+
+        assertFalse(indexingRepository.nameExists("Heineken"));
+        assertTrue(indexingRepository.nameExists("Brahma"));
+    }
+
+    @Test
+    public void returnSuccess_delete_releasesName() {
+        Mockito.when(beerRepository.delete(1)).thenReturn(1L);
+
+        indexingRepository.delete(1);
+
+        assertFalse(indexingRepository.nameExists("Heineken"));
+    }
+
+    @Test
+    public void returnSuccess_nameExists_survivesFilterRebuild() {
+        for(int id = 2; id < 200; id++) {
+            Beer beer = Beer.builder().id(id).name("Beer " + id).build();
+            Mockito.when(beerRepository.create(beer)).thenReturn(beer);
+            indexingRepository.create(beer);
+        }
+
+        for(int id = 2; id < 200; id++) {
+            assertTrue(indexingRepository.nameExists("Beer " + id));
+        }
+        assertTrue(indexingRepository.nameExists("Heineken"));
+    }
+
+    @Test
+    public void returnSuccess_update_indexesRacingWritesInOrder() throws Exception {
+        Beer first = Beer.builder().id(1).name("Brahma").build();
+        Beer second = Beer.builder().id(1).name("Skol").build();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Mockito.when(beerRepository.update(first)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return first;
+        });
+        Mockito.when(beerRepository.update(second)).thenReturn(second);
+
+        Thread slowWriter = new Thread(() -> indexingRepository.update(first));
+        slowWriter.start();
+        entered.await();
+
+        Thread fastWriter = new Thread(() -> indexingRepository.update(second));
+        fastWriter.start();
+        while(fastWriter.getState() != Thread.State.WAITING && fastWriter.isAlive()) {
+            Thread.yield();
+        }
+
+        release.countDown();
+        slowWriter.join();
+        fastWriter.join();
+
+        assertFalse(indexingRepository.nameExists("Brahma"));
+        assertTrue(indexingRepository.nameExists("Skol"));
+    }
+}
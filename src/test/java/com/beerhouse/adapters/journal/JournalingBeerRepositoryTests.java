@@ -0,0 +1,243 @@
+package com.beerhouse.adapters.journal;
+
+import com.beerhouse.adapters.memory.ColumnarBeerRepository;
+import com.beerhouse.domain.model.Beer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JournalingBeerRepositoryTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private JournalingBeerRepository repository;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot().toPath();
+        repository = open();
+        repository.create(beer("Heineken", "Lager", "4.50"));
+        repository.create(beer("Eisenbahn", "Lager", "5.50"));
+        repository.create(beer("Brahma", "Pilsen", "3.50"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        repository.close();
+    }
+
+    @Test
+    public void returnSuccess_reopen_replaysJournal() throws IOException {
+        repository.update(repository.retrieveOne(1).toBuilder().price(new BigDecimal("4.75")).build());
+        repository.alter(2, Collections.singletonMap("name", "Eisenbahn Pale Ale"), Beer.ANY_VERSION);
+        repository.delete(3);
+
+        reopen();
+
+        assertEquals(Arrays.asList("Heineken", "Eisenbahn Pale Ale"), names(repository.retrieveMany()));
+        assertEquals(new BigDecimal("4.75"), repository.retrieveOne(1).getPrice());
+        assertEquals(1, repository.retrieveOne(1).getVersion());
+        assertNull(repository.retrieveOne(3));
+    }
+
+    @Test
+    public void returnSuccess_reopen_neverReusesIds() throws IOException {
+        repository.delete(3);
+
+        reopen();
+
+        assertEquals(4, repository.create(beer("Bohemia", "Pilsen", "4.00")).getId());
+    }
+
+    @Test
+    public void returnSuccess_reopen_replaysBatch() throws IOException {
+        Beer renamed = repository.retrieveOne(1).toBuilder().name("Heineken Zero").build();
+        repository.applyBatch(Collections.singletonList(beer("Bohemia", "Pilsen", "4.00")),
+                Collections.singletonList(renamed), Collections.singletonList(2));
+
+        reopen();
+
+        assertEquals(Arrays.asList("Heineken Zero", "Brahma", "Bohemia"), names(repository.retrieveMany()));
+    }
+
+    @Test
+    public void returnSuccess_snapshot_replacesOlderFiles() throws IOException {
+        repository.snapshot();
+        repository.delete(2);
+        repository.create(beer("Bohemia", "Pilsen", "4.00"));
+
+        reopen();
+
+        assertEquals(Arrays.asList("Heineken", "Brahma", "Bohemia"), names(repository.retrieveMany()));
+        assertFalse(Files.exists(directory.resolve("journal-0.log")));
+        assertTrue(Files.exists(directory.resolve("snapshot-1.bin")));
+    }
+
+    @Test
+    public void returnSuccess_snapshot_keepsBeersCreatedWhileWriting() throws IOException {
+        repository.close();
+        JournalingBeerRepository[] snapshotting = new JournalingBeerRepository[1];
+        ColumnarBeerRepository store = new ColumnarBeerRepository(16) {
+            @Override
+            public void forEach(Consumer<Beer> action) {
+                super.forEach(action);
+                // Lands after the last beer is read but before the trailer is written
+                snapshotting[0].create(beer("Bohemia", "Pilsen", "4.00"));
+            }
+        };
+        repository = new JournalingBeerRepository(store, directory, FsyncPolicy.ALWAYS, 2, 1 << 20);
+        snapshotting[0] = repository;
+        repository.open();
+
+        repository.snapshot();
+        reopen();
+
+        assertEquals(Arrays.asList("Heineken", "Eisenbahn", "Brahma", "Bohemia"), names(repository.retrieveMany()));
+    }
+
+    @Test
+    public void returnFailure_snapshot_countsFailedCompactions() throws Exception {
+        repository.close();
+        ColumnarBeerRepository store = new ColumnarBeerRepository(16) {
+            @Override
+            public void forEach(Consumer<Beer> action) {
+                throw new IllegalStateException("Disk full");
+            }
+        };
+        // Compacts after every write
+        repository = new JournalingBeerRepository(store, directory, FsyncPolicy.ALWAYS, 2, 1);
+        repository.open();
+
+        repository.create(beer("Bohemia", "Pilsen", "4.00"));
+
+        for(int attempt = 0; attempt < 500 && repository.getSnapshotFailureCount() == 0; attempt++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, repository.getSnapshotFailureCount());
+        assertTrue(repository.getLastSnapshotFailure().contains("Disk full"));
+
+        reopen();
+        assertEquals(Arrays.asList("Heineken", "Eisenbahn", "Brahma", "Bohemia"), names(repository.retrieveMany()));
+    }
+
+    @Test
+    public void returnSuccess_reopen_ignoresTornRecord() throws IOException {
+        repository.close();
+        Path journal = directory.resolve("journal-0.log");
+        long end = endOfRecords(journal);
+        try(RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw")) {
+            // A record whose body never made it to the disk
+            file.seek(end);
+            file.writeInt(100);
+            file.writeInt(12345);
+        }
+
+        repository = open();
+        repository.create(beer("Bohemia", "Pilsen", "4.00"));
+        reopen();
+
+        assertEquals(Arrays.asList("Heineken", "Eisenbahn", "Brahma", "Bohemia"), names(repository.retrieveMany()));
+    }
+
+    @Test
+    public void returnFailure_writes_undoneWhenAppendFails() throws IOException {
+        Beer heineken = repository.retrieveOne(1);
+        BeerJournal journal = (BeerJournal) ReflectionTestUtils.getField(repository, "journal");
+        Object channel = ReflectionTestUtils.getField(journal, "channel");
+        Object region = ReflectionTestUtils.getField(journal, "region");
+
+        // The next append has to map a region, from a channel that is closed
+        FileChannel closed = FileChannel.open(folder.newFile().toPath());
+        closed.close();
+        ReflectionTestUtils.setField(journal, "channel", closed);
+        ReflectionTestUtils.setField(journal, "region", null);
+        try {
+            assertAppendFails(() -> repository.create(beer("Bohemia", "Pilsen", "4.00")));
+            assertAppendFails(() -> repository.update(heineken.toBuilder().name("Heineken Zero").build()));
+            assertAppendFails(() -> repository.alter(2, Collections.singletonMap("name", "Eisenbahn Pale Ale"),
+                    Beer.ANY_VERSION));
+            assertAppendFails(() -> repository.delete(3));
+            assertAppendFails(() -> repository.applyBatch(
+                    Collections.singletonList(beer("Bohemia", "Pilsen", "4.00")),
+                    Collections.singletonList(heineken.toBuilder().name("Heineken Zero").build()),
+                    Collections.singletonList(2)));
+        } finally {
+            ReflectionTestUtils.setField(journal, "channel", channel);
+            ReflectionTestUtils.setField(journal, "region", region);
+        }
+
+        assertEquals(Arrays.asList("Heineken", "Eisenbahn", "Brahma"), names(repository.retrieveMany()));
+        assertEquals(heineken, repository.retrieveOne(1));
+        assertFalse(repository.nameExists("Bohemia"));
+
+        repository.create(beer("Bohemia", "Pilsen", "4.00"));
+        reopen();
+
+        assertEquals(Arrays.asList("Heineken", "Eisenbahn", "Brahma", "Bohemia"), names(repository.retrieveMany()));
+    }
+
+    private static void assertAppendFails(Runnable write) {
+        try {
+            write.run();
+            fail("Expected the append to fail");
+        } catch (UncheckedIOException e) {
+            // Undone before anyone could read it
+        }
+    }
+
+    private JournalingBeerRepository open() throws IOException {
+        JournalingBeerRepository journalingRepository = new JournalingBeerRepository(
+                new ColumnarBeerRepository(16), directory, FsyncPolicy.ALWAYS, 2, 1 << 20);
+        journalingRepository.open();
+        return journalingRepository;
+    }
+
+    private void reopen() throws IOException {
+        repository.close();
+        repository = open();
+    }
+
+    private static long endOfRecords(Path journal) throws IOException {
+        long[] end = {0};
+        BeerJournal.replay(journal, record -> end[0] += 2 * Integer.BYTES + record.remaining());
+        return end[0];
+    }
+
+    private static Beer beer(String name, String category, String price) {
+        return Beer.builder()
+                .name(name)
+                .ingredients("Malt, hops")
+                .alcoholContent("5.0%")
+                .price(new BigDecimal(price))
+                .category(category)
+                .build();
+    }
+
+    private static List<String> names(List<Beer> beers) {
+        return beers.stream().map(Beer::getName).collect(Collectors.toList());
+    }
+}
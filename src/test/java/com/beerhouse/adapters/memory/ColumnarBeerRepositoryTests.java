@@ -0,0 +1,152 @@
+package com.beerhouse.adapters.memory;
+
+import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.model.BeerField;
+import com.beerhouse.domain.model.BeerFilter;
+import com.beerhouse.domain.model.exception.BeerAlreadyExistsException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarBeerRepositoryTests {
+
+    private ColumnarBeerRepository repository;
+
+    @Before
+    public void setUp() {
+        repository = new ColumnarBeerRepository(16);
+        repository.create(beer("Heineken", "Lager", "4.50"));
+        repository.create(beer("Eisenbahn", "Lager", "5.50"));
+        repository.create(beer("Brahma", "Pilsen", "3.50"));
+    }
+
+    @Test
+    public void returnSuccess_create_assignsIncreasingIds() {
+        Beer created = repository.create(beer("Bohemia", "Pilsen", "4.00"));
+
+        assertEquals(4, created.getId());
+        assertEquals(created, repository.retrieveOne(4));
+    }
+
+    @Test(expected = BeerAlreadyExistsException.class)
+    public void returnFailure_create_nameTaken() {
+        repository.create(beer("Brahma", "Pilsen", "3.00"));
+    }
+
+    @Test
+    public void returnSuccess_retrievePage_filtersOnColumns() {
+        BeerFilter filter = BeerFilter.builder().category("Lager").minPriceCents(500L).build();
+
+        assertEquals(Collections.singletonList("Eisenbahn"), names(repository.retrievePage(filter, 0, 10)));
+        assertEquals(Arrays.asList("Eisenbahn", "Brahma"),
+                names(repository.retrievePage(BeerFilter.builder().build(), 1, 10)));
+    }
+
+    @Test
+    public void returnSuccess_retrievePage_readsOnlyGivenFields() {
+        List<Beer> page = repository.retrievePage(BeerFilter.builder().build(), 0, 10,
+                EnumSet.of(BeerField.ID, BeerField.NAME));
+
+        assertEquals(Arrays.asList("Heineken", "Eisenbahn", "Brahma"), names(page));
+        assertEquals(1, page.get(0).getId());
+        assertNull(page.get(0).getIngredients());
+        assertNull(page.get(0).getPrice());
+    }
+
+    @Test
+    public void returnSuccess_retrieveByPrice() {
+        assertEquals(Arrays.asList("Heineken", "Eisenbahn"), names(repository.retrieveByPrice("Lager", false, 5)));
+        assertEquals(Collections.singletonList("Eisenbahn"), names(repository.retrieveByPrice("Lager", true, 1)));
+    }
+
+    @Test
+    public void returnSuccess_update_movesName() {
+        Beer renamed = beer("Amstel", "Lager", "4.00").toBuilder().id(1).build();
+
+        Beer updated = repository.update(renamed);
+
+        assertEquals(renamed.toBuilder().version(1).build(), updated);
+        assertEquals(updated, repository.retrieveOne(1));
+        assertFalse(repository.nameExists("Heineken"));
+        assertTrue(repository.nameExists("Amstel"));
+    }
+
+    @Test
+    public void returnSuccess_alter_changesOnlyGivenFields() {
+        Map<String,Object> changes = new LinkedHashMap<>();
+        changes.put("priceCents", 399L);
+
+        Beer altered = repository.alter(3, changes, Beer.ANY_VERSION);
+
+        assertEquals(new BigDecimal("3.99"), altered.getPrice());
+        assertEquals("Brahma", repository.retrieveOne(3).getName());
+    }
+
+    @Test
+    public void returnSuccess_update_onlyAtExpectedVersion() {
+        Beer stale = repository.retrieveOne(1).toBuilder().name("Amstel").build();
+        repository.alter(1, Collections.singletonMap("priceCents", 399L), 0);
+
+        assertNull(repository.update(stale));
+        assertNull(repository.alter(1, Collections.singletonMap("priceCents", 299L), 0));
+        assertEquals("Heineken", repository.retrieveOne(1).getName());
+        assertEquals(1, repository.retrieveOne(1).getVersion());
+    }
+
+    @Test
+    public void returnSuccess_delete_survivesCompaction() {
+        ColumnarBeerRepository large = new ColumnarBeerRepository(16);
+        for(int i = 0; i < 5000; i++) {
+            large.create(beer("Beer " + i, "Lager", "4.00"));
+        }
+        for(int id = 1; id <= 4000; id++) {
+            assertEquals(Long.valueOf(1), large.delete(id));
+        }
+
+        assertNull(large.retrieveOne(10));
+        assertEquals("Beer 4500", large.retrieveOne(4501).getName());
+        assertTrue(large.nameExists("Beer 4999"));
+        assertFalse(large.nameExists("Beer 1"));
+        assertEquals(1000, large.retrieveMany().size());
+    }
+
+    @Test
+    public void returnSuccess_applyBatch() {
+        long version = repository.retrieveOne(1).getVersion();
+        BeerBatchWrite written = repository.applyBatch(
+                Collections.singletonList(beer("Bohemia", "Pilsen", "4.00")),
+                Arrays.asList(
+                        beer("Heineken", "Lager", "4.90").toBuilder().id(1).build(),
+                        beer("Skol", "Lager", "3.00").toBuilder().id(99).build()),
+                Collections.singletonList(2));
+
+        assertEquals(4, written.getCreated().get(0).getId());
+        assertEquals(1, written.getUpdated().size());
+        assertEquals(version + 1, written.getUpdated().get(0).getVersion());
+        assertEquals(new BigDecimal("4.90"), repository.retrieveOne(1).getPrice());
+        assertNull(repository.retrieveOne(2));
+    }
+
+    private static Beer beer(String name, String category, String price) {
+        return Beer.builder().name(name).ingredients("Água, malte").alcoholContent("4.5%")
+                .price(new BigDecimal(price)).category(category).build();
+    }
+
+    private static List<String> names(List<Beer> beers) {
+        return beers.stream().map(Beer::getName).collect(Collectors.toList());
+    }
+}
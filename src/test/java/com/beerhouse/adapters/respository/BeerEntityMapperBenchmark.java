@@ -0,0 +1,77 @@
+package com.beerhouse.adapters.respository;
+
+import com.beerhouse.domain.model.Beer;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static org.modelmapper.config.Configuration.AccessLevel.PRIVATE;
+
+/**
+ * Compares the hand written {@link BeerEntityMapper} against the reflective
+ * ModelMapper setup the repository used before. Run it with the main method
+ * from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeerEntityMapperBenchmark {
+
+    private ModelMapper modelMapper;
+
+    private Beer beer;
+
+    private BeerEntity beerRecord;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        modelMapper.getConfiguration()
+                .setFieldAccessLevel(PRIVATE);
+
+        beer = Beer.builder()
+                .id(1)
+                .name("Heineken")
+                .ingredients("Lúpulo, água")
+                .alcoholContent("4.5%")
+                .price(BigDecimal.valueOf(4.50))
+                .category("Lager")
+                .build();
+
+        beerRecord = BeerEntityMapper.toEntity(beer);
+    }
+
+    @Benchmark
+    public Beer modelMapper_toBeer() {
+        return modelMapper.map(beerRecord, Beer.class);
+    }
+
+    @Benchmark
+    public Beer handWritten_toBeer() {
+        return BeerEntityMapper.toBeer(beerRecord);
+    }
+
+    @Benchmark
+    public BeerEntity modelMapper_toEntity() {
+        return modelMapper.map(beer, BeerEntity.class);
+    }
+
+    @Benchmark
+    public BeerEntity handWritten_toEntity() {
+        return BeerEntityMapper.toEntity(beer);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BeerEntityMapperBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
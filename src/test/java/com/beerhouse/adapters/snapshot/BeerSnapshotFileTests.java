@@ -0,0 +1,87 @@
+package com.beerhouse.adapters.snapshot;
+
+import com.beerhouse.domain.model.Beer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BeerSnapshotFileTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void returnSuccess_read_returnsBeersInOrderAcrossChunks() throws IOException {
+        List<Beer> beers = new ArrayList<>();
+        for(int id = 1; id <= 5000; id++) {
+            beers.add(beer(id));
+        }
+        Path file = folder.getRoot().toPath().resolve("beers.snapshot");
+
+        assertEquals(5000, BeerSnapshotFile.write(file, beers::forEach));
+
+        List<CompletableFuture<List<Beer>>> chunks = BeerSnapshotFile.read(file, executor);
+        List<Beer> read = new ArrayList<>();
+        chunks.forEach(chunk -> read.addAll(chunk.join()));
+
+        assertTrue(chunks.size() > 1);
+        assertEquals(beers, read);
+    }
+
+    @Test
+    public void returnSuccess_read_emptyCatalog() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("beers.snapshot");
+        BeerSnapshotFile.write(file, action -> { });
+
+        assertTrue(BeerSnapshotFile.read(file, executor).isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void returnFailure_read_corruptChunk() throws Throwable {
+        Path file = folder.getRoot().toPath().resolve("beers.snapshot");
+        BeerSnapshotFile.write(file, action -> action.accept(beer(1)));
+        try(RandomAccessFile snapshot = new RandomAccessFile(file.toFile(), "rw")) {
+            snapshot.seek(12);
+            snapshot.writeByte(0x7f);
+        }
+
+        try {
+            BeerSnapshotFile.read(file, executor).get(0).join();
+        } catch (CompletionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Beer beer(int id) {
+        return Beer.builder()
+                .id(id)
+                .name("Beer " + id)
+                .ingredients("Malt, hops, water and a long list of adjuncts to fill the chunks")
+                .alcoholContent("5.0%")
+                .price(new BigDecimal("4.50"))
+                .category(id % 2 == 0 ? "Lager" : "Pilsen")
+                .build();
+    }
+}
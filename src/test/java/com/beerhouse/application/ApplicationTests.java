@@ -3,27 +3,35 @@ package com.beerhouse.application;
 import com.beerhouse.domain.model.Beer;
 import com.beerhouse.domain.model.exception.BeerAlreadyExistsException;
 import com.beerhouse.domain.model.exception.BeerNotFoundException;
+import com.beerhouse.domain.model.exception.BeerVersionMismatchException;
 import com.beerhouse.domain.model.exception.NoBeersFoundException;
 import com.beerhouse.domain.ports.BeerPersistencePort;
 import com.beerhouse.domain.ports.BeerRepositoryPort;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -127,6 +135,250 @@ public class ApplicationTests {
 	}
 
 
+	@Test
+	public void returnSuccess_retrieveBeerPage() throws Exception {
+		Beer beer1 = Beer.builder().id(1).name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build();
+
+		beerRepository.create(beer1);
+
+		Beer beer2 = Beer.builder().id(2).name("Eisenbahn").ingredients("Lúpulo, água")
+				.alcoholContent("4.0%").price(BigDecimal.valueOf(4.20)).category("Lager")
+				.build();
+
+		beerRepository.create(beer2);
+
+		MvcResult firstPage = mvc.perform(get("/beers?limit=1")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items.length()",is(1)))
+				.andExpect(jsonPath("$.items[0].name",is(beer1.getName())))
+				.andExpect(jsonPath("$.nextCursor").isNotEmpty())
+				.andReturn();
+
+		String nextCursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+		mvc.perform(get("/beers?limit=1&after=" + nextCursor)
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items.length()",is(1)))
+				.andExpect(jsonPath("$.items[0].name",is(beer2.getName())))
+				.andExpect(jsonPath("$.nextCursor").doesNotExist());
+	}
+
+	@Test
+	public void returnSuccess_retrieveBeerPage_filtered() throws Exception {
+		beerRepository.create(Beer.builder().name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build());
+
+		beerRepository.create(Beer.builder().name("Eisenbahn").ingredients("Lúpulo, água")
+				.alcoholContent("4.0%").price(BigDecimal.valueOf(4.20)).category("Lager")
+				.build());
+
+		beerRepository.create(Beer.builder().name("Brahma").ingredients("Água, milho")
+				.alcoholContent("4.8%").price(BigDecimal.valueOf(3.50)).category("Pilsen")
+				.build());
+
+		mvc.perform(get("/beers?category=Lager&minPrice=4.30")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items.length()",is(1)))
+				.andExpect(jsonPath("$.items[0].name",is("Heineken")));
+
+		mvc.perform(get("/beers?minAlcohol=4.4&maxAlcohol=5")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items.length()",is(2)))
+				.andExpect(jsonPath("$.items[0].name",is("Heineken")))
+				.andExpect(jsonPath("$.items[1].name",is("Brahma")));
+	}
+
+	@Test
+	public void returnSuccess_retrieveBeerFields() throws Exception {
+		beerRepository.create(Beer.builder().name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build());
+
+		beerRepository.create(Beer.builder().name("Brahma").ingredients("Água, milho")
+				.alcoholContent("4.8%").price(BigDecimal.valueOf(3.50)).category("Pilsen")
+				.build());
+
+		mvc.perform(get("/beers?fields=name,price&category=Lager")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items.length()",is(1)))
+				.andExpect(jsonPath("$.items[0].name",is("Heineken")))
+				.andExpect(jsonPath("$.items[0].price").isNotEmpty())
+				.andExpect(jsonPath("$.items[0].id").doesNotExist())
+				.andExpect(jsonPath("$.items[0].ingredients").doesNotExist());
+
+		mvc.perform(get("/beers?fields=name,color")
+				.accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void returnSuccess_searchBeers() throws Exception {
+		beerRepository.create(Beer.builder().name("Heineken").ingredients("Água, malte, lúpulo")
+				.alcoholContent("5.0%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build());
+
+		beerRepository.create(Beer.builder().name("Citra IPA").ingredients("Água, malte, lúpulo citra")
+				.alcoholContent("6.5%").price(BigDecimal.valueOf(9.90)).category("IPA")
+				.build());
+
+		mvc.perform(get("/beers/search?q=citra hops")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()",is(1)))
+				.andExpect(jsonPath("$[0].name",is("Citra IPA")));
+
+		mvc.perform(get("/beers/search?q=lupulo")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()",is(2)));
+	}
+
+	@Test
+	public void returnSuccess_suggestBeerNames() throws Exception {
+		beerRepository.create(Beer.builder().name("Brahma").ingredients("Água, milho")
+				.alcoholContent("4.8%").price(BigDecimal.valueOf(3.50)).category("Pilsen")
+				.build());
+
+		Beer bohemia = beerRepository.create(Beer.builder().name("Bohemia").ingredients("Água, malte")
+				.alcoholContent("5.0%").price(BigDecimal.valueOf(4.00)).category("Pilsen")
+				.build());
+
+		mvc.perform(get("/beers/suggest?prefix=b")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()",is(2)))
+				.andExpect(jsonPath("$[0]",is("Bohemia")))
+				.andExpect(jsonPath("$[1]",is("Brahma")));
+
+		beerRepository.delete(bohemia.getId());
+
+		mvc.perform(get("/beers/suggest?prefix=bo")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()",is(0)));
+	}
+
+	@Test
+	public void returnSuccess_retrieveBeerStats() throws Exception {
+		beerService.create(Beer.builder().name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build());
+
+		beerService.create(Beer.builder().name("Eisenbahn").ingredients("Lúpulo, água")
+				.alcoholContent("4.0%").price(BigDecimal.valueOf(5.50)).category("Lager")
+				.build());
+
+		beerService.create(Beer.builder().name("Brahma").ingredients("Água, milho")
+				.alcoholContent("4.8%").price(BigDecimal.valueOf(3.50)).category("Pilsen")
+				.build());
+
+		mvc.perform(get("/beers/stats")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()",is(2)))
+				.andExpect(jsonPath("$[0].category",is("Lager")))
+				.andExpect(jsonPath("$[0].count",is(2)))
+				.andExpect(jsonPath("$[0].minPrice",is(4.5)))
+				.andExpect(jsonPath("$[0].avgPrice",is(5.0)))
+				.andExpect(jsonPath("$[0].maxPrice",is(5.5)))
+				.andExpect(jsonPath("$[1].category",is("Pilsen")))
+				.andExpect(jsonPath("$[1].count",is(1)));
+	}
+
+	@Test
+	public void returnSuccess_retrieveBeersByPrice() throws Exception {
+		beerRepository.create(Beer.builder().name("Citra IPA").ingredients("Lúpulo citra")
+				.alcoholContent("6.5%").price(BigDecimal.valueOf(9.90)).category("IPA")
+				.build());
+
+		beerRepository.create(Beer.builder().name("Juicy").ingredients("Lúpulo mosaic")
+				.alcoholContent("6.0%").price(BigDecimal.valueOf(7.50)).category("IPA")
+				.build());
+
+		beerRepository.create(Beer.builder().name("Hazy").ingredients("Lúpulo, aveia")
+				.alcoholContent("6.8%").price(BigDecimal.valueOf(12.00)).category("IPA")
+				.build());
+
+		beerRepository.create(Beer.builder().name("Brahma").ingredients("Água, milho")
+				.alcoholContent("4.8%").price(BigDecimal.valueOf(3.50)).category("Pilsen")
+				.build());
+
+		mvc.perform(get("/beers?category=IPA&sort=price&limit=2")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()",is(2)))
+				.andExpect(jsonPath("$[0].name",is("Juicy")))
+				.andExpect(jsonPath("$[1].name",is("Citra IPA")));
+
+		mvc.perform(get("/beers?category=IPA&sort=-price&limit=1")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()",is(1)))
+				.andExpect(jsonPath("$[0].name",is("Hazy")));
+
+		mvc.perform(get("/beers?category=IPA&sort=name")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void returnFailure_retrieveBeerPage_invalidLimit() throws Exception {
+
+		mvc.perform(get("/beers?limit=0")
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void returnSuccess_exportBeers() throws Exception {
+		Beer beer1 = Beer.builder().id(1).name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build();
+
+		beerRepository.create(beer1);
+
+		Beer beer2 = Beer.builder().id(2).name("Eisenbahn").ingredients("Lúpulo, água")
+				.alcoholContent("4.0%").price(BigDecimal.valueOf(4.20)).category("Lager")
+				.build();
+
+		beerRepository.create(beer2);
+
+		MvcResult result = mvc.perform(get("/beers/export")
+				.accept("application/x-ndjson"))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+				.andReturn();
+
+		String[] lines = result.getResponse().getContentAsString().split("\n");
+
+		assertEquals(2, lines.length);
+		assertEquals(beer1.getName(), objectMapper.readValue(lines[0], Beer.class).getName());
+		assertEquals(beer2.getName(), objectMapper.readValue(lines[1], Beer.class).getName());
+	}
+
 	@Test
 	public void returnFailure_retrieveBeers_noneFound() throws Exception {
 
@@ -265,6 +517,35 @@ public class ApplicationTests {
 						result.getResolvedException().getMessage()));
 	}
 
+	@Test
+	public void returnFailure_updateBeer_versionChanged() throws Exception {
+		Beer beer = Beer.builder().id(1).name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build();
+
+		beerRepository.create(beer);
+
+		mvc.perform(get("/beers/1"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+
+		mvc.perform(put("/beers/1").header(HttpHeaders.IF_MATCH, "\"0\"")
+				.content(objectMapper.writeValueAsString(beer.toBuilder().category("Pilsen").build()))
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+
+		mvc.perform(patch("/beers/1").header(HttpHeaders.IF_MATCH, "\"0\"")
+				.content("{\"category\":\"Lager\"}")
+				.contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isPreconditionFailed())
+				.andExpect(result -> assertTrue(
+						result.getResolvedException() instanceof BeerVersionMismatchException));
+
+		mvc.perform(get("/beers/1").header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+				.andExpect(status().isNotModified());
+	}
+
 	@Test
 	public void returnSuccess_alterBeer() throws Exception {
 		Beer beer = Beer.builder().id(1).name("Heineken").ingredients("Lúpulo, água")
@@ -293,6 +574,65 @@ public class ApplicationTests {
 				.andExpect(jsonPath("$.category",is(fields.get("category"))));
 	}
 
+	@Test
+	public void returnSuccess_patchBeer() throws Exception {
+		Beer beer = Beer.builder().id(1).name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build();
+
+		beerRepository.create(beer);
+
+		String patch = "[{\"op\":\"replace\",\"path\":\"/price\",\"value\":3.9}," +
+				"{\"op\":\"add\",\"path\":\"/category\",\"value\":\"Pilsen\"}]";
+
+		mvc.perform(patch("/beers/1").contentType("application/json-patch+json")
+				.content(patch)
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name",is(beer.getName())))
+				.andExpect(jsonPath("$.price",is(3.9)))
+				.andExpect(jsonPath("$.category",is("Pilsen")));
+	}
+
+	@Test
+	public void returnSuccess_patchBeer_operationsNeedingCurrentBeer() throws Exception {
+		Beer beer = Beer.builder().id(1).name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build();
+
+		beerRepository.create(beer);
+
+		String patch = "[{\"op\":\"test\",\"path\":\"/name\",\"value\":\"Heineken\"}," +
+				"{\"op\":\"copy\",\"from\":\"/category\",\"path\":\"/name\"}]";
+
+		mvc.perform(patch("/beers/1").contentType("application/json-patch+json")
+				.content(patch)
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.name",is("Lager")))
+				.andExpect(jsonPath("$.category",is("Lager")));
+	}
+
+	@Test
+	public void returnFailure_patchBeer_testOperationFails() throws Exception {
+		Beer beer = Beer.builder().id(1).name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build();
+
+		beerRepository.create(beer);
+
+		String patch = "[{\"op\":\"test\",\"path\":\"/name\",\"value\":\"Brahma\"}," +
+				"{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"Eisenbahn\"}]";
+
+		mvc.perform(patch("/beers/1").contentType("application/json-patch+json")
+				.content(patch)
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isBadRequest());
+	}
+
 	@Test
 	public void returnSuccess_alterBeer_beerDoesntExists() throws Exception {
 
@@ -343,6 +683,66 @@ public class ApplicationTests {
 						result.getResolvedException().getMessage()));
 	}
 
+	@Test
+	public void returnSuccess_applyBatch() throws Exception {
+		Beer existingBeer1 = Beer.builder().id(1).name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build();
+
+		beerRepository.create(existingBeer1);
+
+		Beer existingBeer2 = Beer.builder().id(2).name("Eisenbahn").ingredients("Lúpulo, água")
+				.alcoholContent("4.0%").price(BigDecimal.valueOf(4.20)).category("Lager")
+				.build();
+
+		beerRepository.create(existingBeer2);
+
+		String batch = "[" +
+				"{\"op\":\"create\",\"beer\":{\"name\":\"Brahma\",\"ingredients\":\"Água, milho\"," +
+				"\"alcoholContent\":\"4.8%\",\"price\":3.5,\"category\":\"Pilsen\"}}," +
+				"{\"op\":\"create\",\"beer\":{\"name\":\"Heineken\",\"ingredients\":\"Água, milho\"," +
+				"\"alcoholContent\":\"4.8%\",\"price\":3.5,\"category\":\"Pilsen\"}}," +
+				"{\"op\":\"update\",\"id\":1,\"beer\":{\"name\":\"Heineken\",\"ingredients\":\"Lúpulo\"," +
+				"\"alcoholContent\":\"5.0%\",\"price\":5.5,\"category\":\"Lager\"}}," +
+				"{\"op\":\"delete\",\"id\":2}," +
+				"{\"op\":\"delete\",\"id\":99}]";
+
+		mvc.perform(post("/beers/batch").contentType(MediaType.APPLICATION_JSON)
+				.content(batch)
+				.accept(MediaType.APPLICATION_JSON))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].outcome",is("CREATED")))
+				.andExpect(jsonPath("$[1].outcome",is("NAME_TAKEN")))
+				.andExpect(jsonPath("$[2].outcome",is("UPDATED")))
+				.andExpect(jsonPath("$[3].outcome",is("DELETED")))
+				.andExpect(jsonPath("$[4].outcome",is("NOT_FOUND")));
+
+		assertEquals("Lúpulo", beerService.retrieveOne(1).getIngredients());
+		assertTrue(beerRepository.nameExists("Brahma"));
+		assertFalse(beerRepository.nameExists("Eisenbahn"));
+	}
+
+	@Test
+	public void returnFailure_applyBatch_reportsOnlyTakenName() {
+		beerRepository.create(Beer.builder().name("Heineken").ingredients("Lúpulo, água")
+				.alcoholContent("4.5%").price(BigDecimal.valueOf(4.50)).category("Lager")
+				.build());
+
+		try {
+			beerRepository.applyBatch(Arrays.asList(
+					Beer.builder().name("Brahma").ingredients("Água, milho")
+							.alcoholContent("4.8%").price(BigDecimal.valueOf(3.50)).category("Pilsen").build(),
+					Beer.builder().name("Heineken").ingredients("Água, milho")
+							.alcoholContent("4.8%").price(BigDecimal.valueOf(3.50)).category("Pilsen").build()),
+					Collections.emptyList(), Collections.emptyList());
+			fail("Expected the batch to be rejected");
+		} catch (BeerAlreadyExistsException ex) {
+			assertEquals("Beer with name Heineken already exists", ex.getMessage());
+		}
+		assertFalse(beerRepository.nameExists("Brahma"));
+	}
+
 	@Test
 	public void returnSuccess_deleteBeer() throws Exception {
 
@@ -0,0 +1,28 @@
+package com.beerhouse.domain.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BeerUnitsTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void returnSuccess_formatAlcoholContent_keepsEnteredValue() throws Exception {
+        assertEquals("5%", roundTrip("5%"));
+        assertEquals("4.5%", roundTrip("4.5%"));
+        assertEquals("4.75%", roundTrip("4.75%"));
+        assertEquals("0%", roundTrip("0%"));
+    }
+
+    private String roundTrip(String alcoholContent) throws Exception {
+        String json = "{\"name\":\"Heineken\",\"ingredients\":\"Malt, hops\",\"alcoholContent\":\"" + alcoholContent
+                + "\",\"price\":4.5,\"category\":\"Lager\"}";
+        Beer beer = objectMapper.readValue(json, Beer.class);
+        JsonNode written = objectMapper.readTree(objectMapper.writeValueAsString(beer));
+        return written.get("alcoholContent").asText();
+    }
+}
@@ -1,17 +1,32 @@
 package com.beerhouse.domain.service;
 
-import com.beerhouse.application.config.BeanConfig;
 import com.beerhouse.domain.model.Beer;
+import com.beerhouse.domain.model.BeerBatchOperation;
+import com.beerhouse.domain.model.BeerBatchOperation.Type;
+import com.beerhouse.domain.model.BeerBatchResult;
+import com.beerhouse.domain.model.BeerBatchResult.Outcome;
+import com.beerhouse.domain.model.BeerBatchWrite;
+import com.beerhouse.domain.model.BeerCategoryStats;
+import com.beerhouse.domain.model.BeerChanges;
+import com.beerhouse.domain.model.BeerField;
+import com.beerhouse.domain.model.BeerFilter;
+import com.beerhouse.domain.model.BeerLookup;
+import com.beerhouse.domain.model.BeerPage;
+import com.beerhouse.domain.model.BeerProjectionPage;
 import com.beerhouse.domain.model.exception.BeerAlreadyExistsException;
+import com.beerhouse.domain.model.exception.BeerChangesExpiredException;
 import com.beerhouse.domain.model.exception.BeerNotFoundException;
+import com.beerhouse.domain.model.exception.BeerVersionMismatchException;
 import com.beerhouse.domain.model.exception.NoBeersFoundException;
+import com.beerhouse.domain.ports.BeerChangeListener;
 import com.beerhouse.domain.ports.BeerPersistencePort;
 import com.beerhouse.domain.ports.BeerRepositoryPort;
+import com.beerhouse.domain.services.BeerChangeLog;
 import com.beerhouse.domain.services.BeerService;
+import com.beerhouse.domain.services.BeerStatistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ContextConfiguration;
@@ -21,20 +36,23 @@ import java.math.BigDecimal;
 import java.util.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(SpringRunner.class)
 @ContextConfiguration(classes = {
         BeerService.class,
-        BeanConfig.class
+        BeerStatistics.class,
+        BeerChangeLog.class
 })
 public class BeerServiceTests {
 
     @MockBean
     BeerRepositoryPort beerRepository;
 
-    @Autowired
-    ModelMapper modelMapper;
+    @MockBean
+    BeerChangeListener changeListener;
 
     @Autowired
     BeerPersistencePort beerService;
@@ -120,6 +138,64 @@ public class BeerServiceTests {
         }
     }
 
+    @Test
+    public void returnSuccess_retrievePage() {
+        Beer beer1 = Beer.builder().id(1).name("Heineken").build();
+        Beer beer2 = Beer.builder().id(2).name("Eisenbahn").build();
+        Beer beer3 = Beer.builder().id(3).name("Brahma").build();
+
+        Mockito.when(beerRepository.retrievePage(BeerFilter.builder().build(), 0, 3))
+                .thenReturn(new ArrayList<>(Arrays.asList(beer1, beer2, beer3)));
+
+        BeerPage page = beerService.retrievePage(BeerFilter.builder().build(), null, 2);
+
+        assertEquals(Arrays.asList(beer1, beer2), page.getItems());
+        assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString("2".getBytes()),
+                page.getNextCursor());
+    }
+
+    @Test
+    public void returnSuccess_retrievePage_lastPage() {
+        Beer beer3 = Beer.builder().id(3).name("Brahma").build();
+        String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString("2".getBytes());
+
+        Mockito.when(beerRepository.retrievePage(BeerFilter.builder().build(), 2, 3))
+                .thenReturn(new ArrayList<>(Collections.singletonList(beer3)));
+
+        BeerPage page = beerService.retrievePage(BeerFilter.builder().build(), cursor, 2);
+
+        assertEquals(Collections.singletonList(beer3), page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void returnFailure_retrievePage_invalidCursor() {
+        beerService.retrievePage(BeerFilter.builder().build(), "not a cursor", 2);
+    }
+
+    @Test
+    public void returnSuccess_retrievePage_filtered() {
+        Beer beer2 = Beer.builder().id(2).name("Eisenbahn").category("Lager").build();
+        BeerFilter filter = BeerFilter.builder().category("Lager")
+                .minPriceCents(400L).maxPriceCents(500L).build();
+
+        Mockito.when(beerRepository.retrievePage(filter, 0, 3))
+                .thenReturn(new ArrayList<>(Collections.singletonList(beer2)));
+
+        BeerPage page = beerService.retrievePage(filter, null, 2);
+
+        assertEquals(Collections.singletonList(beer2), page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void returnFailure_retrievePage_invertedPriceRange() {
+        BeerFilter filter = BeerFilter.builder()
+                .minPriceCents(500L).maxPriceCents(400L).build();
+
+        beerService.retrievePage(filter, null, 2);
+    }
+
     @Test
     public void returnSuccess_create() {
         Beer beer = Beer.builder()
@@ -191,6 +267,42 @@ public class BeerServiceTests {
         assertEquals(updatedBeer,replacementBeer);
     }
 
+    @Test
+    public void returnSuccess_update_singleRoundTrip() {
+        Beer replacementBeer = Beer.builder()
+                .id(1)
+                .name("Heineken")
+                .ingredients("Lúpulo, água")
+                .alcoholContent("4.5%")
+                .price(BigDecimal.valueOf(4.50))
+                .category("Lager")
+                .build();
+
+        Mockito.when(beerRepository.update(replacementBeer)).thenReturn(replacementBeer);
+
+        beerService.update(1,replacementBeer);
+
+        Mockito.verify(beerRepository, Mockito.never()).retrieveOne(Mockito.anyInt());
+        Mockito.verify(beerRepository, Mockito.never()).nameExists(Mockito.anyString());
+    }
+
+    @Test(expected = BeerAlreadyExistsException.class)
+    public void returnFailure_update_nameAlreadyExists() {
+        Beer replacementBeer = Beer.builder()
+                .id(1)
+                .name("Heineken")
+                .ingredients("Lúpulo, água")
+                .alcoholContent("4.5%")
+                .price(BigDecimal.valueOf(4.50))
+                .category("Lager")
+                .build();
+
+        Mockito.when(beerRepository.update(replacementBeer))
+                .thenThrow(new BeerAlreadyExistsException(replacementBeer.getName()));
+
+        beerService.update(1,replacementBeer);
+    }
+
     @Test
     public void returnFailure_update_beerDoesntExist() {
         Beer replacementBeer = Beer.builder()
@@ -211,6 +323,24 @@ public class BeerServiceTests {
         }
     }
 
+    @Test(expected = BeerVersionMismatchException.class)
+    public void returnFailure_update_versionChanged() {
+        Beer replacementBeer = Beer.builder()
+                .id(1)
+                .name("Heineken")
+                .ingredients("Lúpulo, água")
+                .alcoholContent("4.5%")
+                .price(BigDecimal.valueOf(4.50))
+                .category("Lager")
+                .version(3)
+                .build();
+
+        Mockito.when(beerRepository.update(replacementBeer)).thenReturn(null);
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(replacementBeer.toBuilder().version(4).build());
+
+        beerService.update(1,replacementBeer);
+    }
+
     @Test
     public void returnSuccess_alter() {
         LinkedHashMap<String,Object> fields = new LinkedHashMap<>();
@@ -236,11 +366,86 @@ public class BeerServiceTests {
                 .category("Pilsen")
                 .build();
 
+        Map<String,Object> expectedChanges = new LinkedHashMap<>();
+        expectedChanges.put("alcoholBasisPoints",300);
+        expectedChanges.put("category","Pilsen");
+        expectedChanges.put("name","Brahma");
+
         Mockito.when(beerRepository.retrieveOne(1)).thenReturn(existingBeer);
-        Mockito.when(beerRepository.alter(expectedBeer)).thenReturn(expectedBeer);
+        Mockito.when(beerRepository.alter(1,expectedChanges,Beer.ANY_VERSION)).thenReturn(expectedBeer);
 
         Beer alteredBeer = beerService.alter(1,fields);
         assertEquals(expectedBeer,alteredBeer);
+        Mockito.verify(beerRepository, Mockito.never()).retrieveOne(1);
+    }
+
+    @Test
+    public void returnSuccess_alter_onlyChangedColumns() {
+        LinkedHashMap<String,Object> fields = new LinkedHashMap<>();
+        fields.put("id",1);
+        fields.put("price",3.9);
+
+        Map<String,Object> expectedChanges = new LinkedHashMap<>();
+        expectedChanges.put("priceCents",390L);
+
+        Beer expectedBeer = Beer.builder()
+                .id(1)
+                .name("Eisenbahn")
+                .price(new BigDecimal("3.9"))
+                .build();
+
+        Mockito.when(beerRepository.alter(1,expectedChanges,Beer.ANY_VERSION)).thenReturn(expectedBeer);
+
+        assertEquals(expectedBeer,beerService.alter(1,fields));
+    }
+
+    @Test(expected = BeerVersionMismatchException.class)
+    public void returnFailure_alter_versionChanged() {
+        LinkedHashMap<String,Object> fields = new LinkedHashMap<>();
+        fields.put("category","Pilsen");
+
+        Map<String,Object> expectedChanges = new LinkedHashMap<>();
+        expectedChanges.put("category","Pilsen");
+
+        Mockito.when(beerRepository.alter(1,expectedChanges,3L)).thenReturn(null);
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(Beer.builder().id(1).version(4).build());
+
+        beerService.alter(1,fields,3L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void returnFailure_alter_negativePrice() {
+        LinkedHashMap<String,Object> fields = new LinkedHashMap<>();
+        fields.put("price",-1);
+
+        beerService.alter(1,fields);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void returnFailure_alter_unreadableAlcoholContent() {
+        LinkedHashMap<String,Object> fields = new LinkedHashMap<>();
+        fields.put("alcoholContent","strong");
+
+        beerService.alter(1,fields);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void returnFailure_alter_unknownField() {
+        LinkedHashMap<String,Object> fields = new LinkedHashMap<>();
+        fields.put("brewery","Heineken");
+
+        Beer existingBeer = Beer.builder()
+                .id(1)
+                .name("Eisenbahn")
+                .ingredients("Lúpulo, água")
+                .alcoholContent("4.5%")
+                .price(BigDecimal.valueOf(4.20))
+                .category("Lager")
+                .build();
+
+        Mockito.when(beerRepository.retrieveOne(1)).thenReturn(existingBeer);
+
+        beerService.alter(1,fields);
     }
 
     @Test
@@ -270,6 +475,197 @@ public class BeerServiceTests {
     }
 
 
+    @Test
+    public void returnSuccess_applyBatch() {
+        Beer newBeer = Beer.builder().name("Brahma").build();
+        Beer replacementBeer = Beer.builder().name("Eisenbahn").build();
+        Beer createdBeer = newBeer.toBuilder().id(3).build();
+        Beer updatedBeer = replacementBeer.toBuilder().id(1).version(4L).build();
+
+        Mockito.when(beerRepository.idsByName(Arrays.asList("Brahma", "Eisenbahn")))
+                .thenReturn(Collections.singletonMap("Eisenbahn", 1));
+        Mockito.when(beerRepository.existingIds(Arrays.asList(1, 2)))
+                .thenReturn(new HashSet<>(Arrays.asList(1, 2)));
+        Mockito.when(beerRepository.applyBatch(
+                Collections.singletonList(newBeer),
+                Collections.singletonList(replacementBeer),
+                Collections.singletonList(2)))
+                .thenReturn(new BeerBatchWrite(
+                        Collections.singletonList(createdBeer),
+                        Collections.singletonList(updatedBeer)));
+
+        List<BeerBatchResult> results = beerService.applyBatch(Arrays.asList(
+                new BeerBatchOperation(Type.CREATE, null, newBeer, null),
+                new BeerBatchOperation(Type.UPDATE, 1, replacementBeer, null),
+                new BeerBatchOperation(Type.DELETE, 2, null, null)));
+
+        assertEquals(new BeerBatchResult(0, Type.CREATE, 3, Outcome.CREATED, null), results.get(0));
+        assertEquals(new BeerBatchResult(1, Type.UPDATE, 1, Outcome.UPDATED, null), results.get(1));
+        assertEquals(new BeerBatchResult(2, Type.DELETE, 2, Outcome.DELETED, null), results.get(2));
+        Mockito.verify(changeListener).beerSaved(updatedBeer);
+        Mockito.verify(changeListener).beerSaved(createdBeer);
+        Mockito.verify(changeListener).beerDeleted(2);
+    }
+
+    @Test
+    public void returnFailure_applyBatch_rejectedEntries() {
+        Beer takenName = Beer.builder().name("Heineken").build();
+        Beer duplicateName = Beer.builder().name("Heineken").build();
+
+        Mockito.when(beerRepository.idsByName(Collections.singletonList("Heineken")))
+                .thenReturn(Collections.singletonMap("Heineken", 1));
+        Mockito.when(beerRepository.existingIds(Collections.singletonList(7)))
+                .thenReturn(new HashSet<>());
+
+        List<BeerBatchResult> results = beerService.applyBatch(Arrays.asList(
+                new BeerBatchOperation(Type.CREATE, null, takenName, null),
+                new BeerBatchOperation(Type.CREATE, null, duplicateName, null),
+                new BeerBatchOperation(Type.DELETE, 7, null, null),
+                new BeerBatchOperation(Type.UPDATE, null, null, null),
+                new BeerBatchOperation(null, null, null, "Unknown operation upsert")));
+
+        assertEquals(Outcome.NAME_TAKEN, results.get(0).getOutcome());
+        assertEquals(Outcome.NAME_TAKEN, results.get(1).getOutcome());
+        assertEquals(Outcome.NOT_FOUND, results.get(2).getOutcome());
+        assertEquals(Outcome.INVALID, results.get(3).getOutcome());
+        assertEquals("Unknown operation upsert", results.get(4).getMessage());
+        Mockito.verify(beerRepository, Mockito.never())
+                .applyBatch(Mockito.anyList(), Mockito.anyList(), Mockito.anyList());
+    }
+
+    @Test
+    public void returnSuccess_retrieveByPrice_mostExpensiveFirst() {
+        Beer beer = Beer.builder().id(1).name("Hazy").category("IPA").build();
+
+        Mockito.when(beerRepository.retrieveByPrice("IPA", true, 1))
+                .thenReturn(Collections.singletonList(beer));
+
+        assertEquals(Collections.singletonList(beer), beerService.retrieveByPrice("IPA", "-price", 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void returnFailure_search_blankQuery() {
+        beerService.search("  ", 20);
+    }
+
+    @Test
+    public void returnSuccess_retrieveStats_followsWrites() {
+        Beer heineken = Beer.builder().id(101).name("Heineken").category("Stats Lager")
+                .price(BigDecimal.valueOf(4.50)).build();
+        Beer eisenbahn = Beer.builder().id(102).name("Eisenbahn").category("Stats Lager")
+                .price(BigDecimal.valueOf(5.50)).build();
+        Beer brahma = Beer.builder().id(103).name("Brahma").category("Stats Pilsen")
+                .price(BigDecimal.valueOf(3.00)).build();
+        Beer cheaperEisenbahn = eisenbahn.toBuilder().price(BigDecimal.valueOf(2.50)).build();
+
+        Mockito.when(beerRepository.create(Mockito.any(Beer.class)))
+                .thenReturn(heineken, eisenbahn, brahma);
+        Mockito.when(beerRepository.update(cheaperEisenbahn)).thenReturn(cheaperEisenbahn);
+        Mockito.when(beerRepository.delete(103)).thenReturn(1L);
+
+        beerService.create(heineken);
+        beerService.create(eisenbahn);
+        beerService.create(brahma);
+        beerService.update(102, cheaperEisenbahn);
+        beerService.delete(103);
+
+        // Other tests share the statistics bean, so only this test's categories are checked
+        List<BeerCategoryStats> stats = beerService.retrieveStats();
+
+        assertTrue(stats.contains(new BeerCategoryStats("Stats Lager", 2,
+                new BigDecimal("2.50"), new BigDecimal("3.50"), new BigDecimal("4.50"))));
+        assertTrue(stats.stream().noneMatch(categoryStats -> categoryStats.getCategory().equals("Stats Pilsen")));
+    }
+
+    @Test
+    public void returnSuccess_retrieveChanges_followsWrites() {
+        Beer heineken = Beer.builder().id(201).name("Heineken").category("Lager")
+                .price(BigDecimal.valueOf(4.50)).build();
+        Beer eisenbahn = Beer.builder().id(202).name("Eisenbahn").category("Lager")
+                .price(BigDecimal.valueOf(5.50)).build();
+
+        long since = beerService.retrieveChanges(null, 10).getSequence();
+
+        Mockito.when(beerRepository.create(Mockito.any(Beer.class))).thenReturn(heineken, eisenbahn);
+        Mockito.when(beerRepository.delete(202)).thenReturn(1L);
+        Mockito.when(beerRepository.retrieveByIds(Mockito.anyCollectionOf(Integer.class)))
+                .thenReturn(Collections.singletonList(heineken));
+
+        beerService.create(heineken);
+        beerService.create(eisenbahn);
+        beerService.delete(202);
+
+        BeerChanges changes = beerService.retrieveChanges(since, 10);
+
+        assertEquals(Collections.singletonList(heineken), changes.getItems());
+        assertEquals(Collections.singletonList(202), changes.getDeletedIds());
+        assertEquals(since + 3, changes.getSequence());
+        assertTrue(beerService.retrieveChanges(changes.getSequence(), 10).getItems().isEmpty());
+    }
+
+    @Test
+    public void returnSuccess_restore_countedButNotLoggedAsChanges() {
+        Beer bohemia = Beer.builder().id(301).name("Bohemia").category("Restored Pilsen")
+                .price(BigDecimal.valueOf(4.00)).build();
+
+        long since = beerService.retrieveChanges(null, 10).getSequence();
+
+        beerService.restore(Collections.singletonList(bohemia));
+
+        assertEquals(since, beerService.retrieveChanges(since, 10).getSequence());
+        assertTrue(beerService.retrieveStats().stream()
+                .anyMatch(categoryStats -> categoryStats.getCategory().equals("Restored Pilsen")));
+    }
+
+    @Test(expected = BeerChangesExpiredException.class)
+    public void returnFailure_retrieveChanges_beforeStartup() {
+        beerService.retrieveChanges(0L, 10);
+    }
+
+    @Test
+    public void returnSuccess_retrievePage_onlyRequestedFields() {
+        Beer heineken = Beer.builder().id(1).name("Heineken").price(BigDecimal.valueOf(4.50)).build();
+        Beer eisenbahn = Beer.builder().id(2).name("Eisenbahn").price(BigDecimal.valueOf(5.50)).build();
+
+        Mockito.when(beerRepository.retrievePage(Mockito.any(BeerFilter.class), Mockito.eq(0), Mockito.eq(2),
+                Mockito.eq(EnumSet.of(BeerField.ID, BeerField.NAME, BeerField.PRICE))))
+                .thenReturn(Arrays.asList(heineken, eisenbahn));
+
+        BeerProjectionPage page = beerService.retrievePage(BeerFilter.builder().build(), null, 1,
+                Arrays.asList("price", "name"));
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(Arrays.asList("price", "name"), new ArrayList<>(page.getItems().get(0).keySet()));
+        assertEquals("Heineken", page.getItems().get(0).get("name"));
+        assertEquals(heineken.getPrice(), page.getItems().get(0).get("price"));
+        assertNotNull(page.getNextCursor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void returnFailure_retrievePage_unknownField() {
+        beerService.retrievePage(BeerFilter.builder().build(), null, 10, Arrays.asList("name", "color"));
+    }
+
+    @Test
+    public void returnSuccess_retrieveByIds_inRequestedOrder() {
+        Beer heineken = Beer.builder().id(5).name("Heineken").build();
+        Beer eisenbahn = Beer.builder().id(9).name("Eisenbahn").build();
+
+        Mockito.when(beerRepository.retrieveByIds(Mockito.anyCollectionOf(Integer.class)))
+                .thenReturn(Arrays.asList(heineken, eisenbahn));
+
+        BeerLookup lookup = beerService.retrieveByIds(Arrays.asList(9, 1, 5, 9));
+
+        assertEquals(Arrays.asList(eisenbahn, heineken), lookup.getItems());
+        assertEquals(Collections.singletonList(1), lookup.getMissingIds());
+        Mockito.verify(beerRepository).retrieveByIds(new LinkedHashSet<>(Arrays.asList(9, 1, 5)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void returnFailure_retrieveByIds_noIds() {
+        beerService.retrieveByIds(Collections.emptyList());
+    }
+
     @Test
     public void returnSuccess_delete() {
 